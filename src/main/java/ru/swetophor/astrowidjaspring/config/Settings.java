@@ -2,6 +2,8 @@ package ru.swetophor.astrowidjaspring.config;
 
 import jakarta.annotation.PostConstruct;
 import org.springframework.stereotype.Component;
+import ru.swetophor.astrowidjaspring.model.MatrixBuild;
+import ru.swetophor.astrowidjaspring.model.MatrixStorage;
 
 import java.io.FileWriter;
 import java.io.IOException;
@@ -28,6 +30,11 @@ public class Settings {
     private static final boolean AUTOSAVE_DEFAULT = false;
     private static final String AUTOLOAD_FILE_DEFAULT = "autosave.daw";
     private static final boolean AUTOLOAD_ENABLED_DEFAULTS = true;
+    private static final MatrixStorage MATRIX_STORAGE_DEFAULT = MatrixStorage.OBJECTS;
+    private static final MatrixBuild MATRIX_BUILD_DEFAULT = MatrixBuild.SEQUENTIAL;
+    private static final boolean ARC_SECONDS_DEFAULT = false;
+    private static final boolean MATRIX_PERSISTENCE_DEFAULT = false;
+    private static final int MATRIX_CACHE_LIMIT_DEFAULT = 512;
 
     static {
         settingsMap.put("HARMONICA_ULTIMA", String.valueOf(EDGE_HARMONIC_DEFAULT));
@@ -36,6 +43,11 @@ public class Settings {
         settingsMap.put("AUTOSAVE", String.valueOf(AUTOSAVE_DEFAULT));
         settingsMap.put("AUTOLOAD_FILE", AUTOLOAD_FILE_DEFAULT);
         settingsMap.put("AUTOLOAD_ENABLED", String.valueOf(AUTOLOAD_ENABLED_DEFAULTS));
+        settingsMap.put("MATRIX_STORAGE", MATRIX_STORAGE_DEFAULT.name());
+        settingsMap.put("MATRIX_BUILD", MATRIX_BUILD_DEFAULT.name());
+        settingsMap.put("ARC_SECONDS", String.valueOf(ARC_SECONDS_DEFAULT));
+        settingsMap.put("MATRIX_PERSISTENCE", String.valueOf(MATRIX_PERSISTENCE_DEFAULT));
+        settingsMap.put("MATRIX_CACHE_LIMIT", String.valueOf(MATRIX_CACHE_LIMIT_DEFAULT));
     }
 
     @PostConstruct
@@ -83,6 +95,16 @@ public class Settings {
         return Optional.ofNullable(settingsMap.get(property));
     }
 
+    private static <E extends Enum<E>> Optional<E> getEnumProperty(String property, Class<E> type) {
+        String value = settingsMap.get(property);
+        if (value == null) return Optional.empty();
+        try {
+            return Optional.of(Enum.valueOf(type, value.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
     /*
         Получатели свойств.
      */
@@ -119,6 +141,51 @@ public class Settings {
         return getBoolProperty("AUTOLOAD_ENABLED").orElse(AUTOLOAD_ENABLED_DEFAULTS);
     }
 
+    /**
+     * Сообщает, каким способом хранить резонансы в строящихся АстроМатрицах.
+     * @return способ хранения, заданный свойством "MATRIX_STORAGE";
+     * если свойство не задано или не распознано, хранение объектами.
+     */
+    public static MatrixStorage getMatrixStorage() {
+        return getEnumProperty("MATRIX_STORAGE", MatrixStorage.class).orElse(MATRIX_STORAGE_DEFAULT);
+    }
+
+    /**
+     * Сообщает, как рассчитывать резонансы в строящихся АстроМатрицах.
+     * @return способ построения, заданный свойством "MATRIX_BUILD";
+     * если свойство не задано или не распознано, последовательный расчёт всех пар сразу.
+     */
+    public static MatrixBuild getMatrixBuild() {
+        return getEnumProperty("MATRIX_BUILD", MatrixBuild.class).orElse(MATRIX_BUILD_DEFAULT);
+    }
+
+    /**
+     * Сообщает, рассчитывать ли резонансы в строящихся АстроМатрицах по позициям,
+     * округлённым до угловой секунды, в целочисленной арифметике.
+     * @return значение свойства "ARC_SECONDS"; по умолчанию ложно, т.е. расчёт в {@code double}.
+     */
+    public static boolean isArcSecondMode() {
+        return getBoolProperty("ARC_SECONDS").orElse(ARC_SECONDS_DEFAULT);
+    }
+
+    /**
+     * Сообщает, сохранять ли рассчитанные АстроМатрицы в папку программы
+     * и открывать ли сохранённые вместо повторного расчёта.
+     * @return значение свойства "MATRIX_PERSISTENCE"; по умолчанию ложно.
+     */
+    public static boolean isMatrixPersistence() {
+        return getBoolProperty("MATRIX_PERSISTENCE").orElse(MATRIX_PERSISTENCE_DEFAULT);
+    }
+
+    /**
+     * Сообщает, сколько места могут занимать сохранённые АстроМатрицы; при превышении
+     * удаляются те, что дольше всех не открывались.
+     * @return значение свойства "MATRIX_CACHE_LIMIT" в мегабайтах; по умолчанию 512.
+     */
+    public static int getMatrixCacheLimit() {
+        return getIntProperty("MATRIX_CACHE_LIMIT").orElse(MATRIX_CACHE_LIMIT_DEFAULT);
+    }
+
 
     /*
         Устанавливатели свойств.
@@ -140,6 +207,14 @@ public class Settings {
         settingsMap.put("ORBS_DIVISOR", String.valueOf(orbsDivisor));
     }
 
+    public static void setMatrixStorage(MatrixStorage storage) {
+        settingsMap.put("MATRIX_STORAGE", storage.name());
+    }
+
+    public static void setMatrixBuild(MatrixBuild build) {
+        settingsMap.put("MATRIX_BUILD", build.name());
+    }
+
     public static void disableHalfOrbForDoubles() {
         settingsMap.put("ORBES_DIMIDII_DUPLICIBUS", "false");
     }
@@ -148,6 +223,26 @@ public class Settings {
         settingsMap.put("ORBES_DIMIDII_DUPLICIBUS", "true");
     }
 
+    public static void disableArcSecondMode() {
+        settingsMap.put("ARC_SECONDS", "false");
+    }
+
+    public static void enableArcSecondMode() {
+        settingsMap.put("ARC_SECONDS", "true");
+    }
+
+    public static void disableMatrixPersistence() {
+        settingsMap.put("MATRIX_PERSISTENCE", "false");
+    }
+
+    public static void enableMatrixPersistence() {
+        settingsMap.put("MATRIX_PERSISTENCE", "true");
+    }
+
+    public static void setMatrixCacheLimit(int megabytes) {
+        settingsMap.put("MATRIX_CACHE_LIMIT", String.valueOf(megabytes));
+    }
+
 public static void saveSettings() {
         StringBuilder drop = new StringBuilder();
         for (Map.Entry<String, String> property : settingsMap.entrySet())
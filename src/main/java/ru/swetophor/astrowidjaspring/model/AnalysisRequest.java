@@ -0,0 +1,138 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import ru.swetophor.astrowidjaspring.config.Settings;
+import ru.swetophor.astrowidjaspring.model.astro.AspectList;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.model.astro.PrecisionClass;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+import ru.swetophor.astrowidjaspring.utils.CelestialMechanics;
+
+import java.util.List;
+
+/**
+ * Запрос анализа: какие гармоники, аспекты и астры нужны в отчёте.
+ * {@link AstroMatrix Матрица}, построенная по запросу, сверяется с ним при расчёте,
+ * так что исключённое в отчёт не просто не попадает, а не рассчитывается и не хранится:
+ * <ul>
+ *     <li>резонансы рассчитываются только до верхней гармоники диапазона;</li>
+ *     <li>пары, в которые входит не выбранная астра, остаются пустыми;</li>
+ *     <li>у остальных пар хранятся только аспекты не ниже указанной точности и силы,
+ *     причём аспекты чисел ниже диапазона — только если в пределах их глубины
+ *     у них есть кратное в диапазоне (иначе они ни на что в нём не влияют).</li>
+ * </ul>
+ * Аспекты пары отбираются по всем гармоникам и лишь затем фильтруются, поэтому
+ * оставшиеся аспекты те же, что у Матрицы без запроса. Паттерны ищутся только
+ * по гармоникам диапазона и только для сочетаний выбранных карт.
+ *
+ * @param fromHarmonic нижняя гармоника диапазона.
+ * @param toHarmonic   верхняя гармоника диапазона; она же крайняя гармоника Матрицы.
+ * @param minPrecision наименьший класс точности хранимых аспектов.
+ * @param minStrength  наименьшая сила хранимых аспектов в процентах,
+ *                     как {@link CelestialMechanics#calculateStrength(double, double)}.
+ * @param charts       карты, астры которых рассматриваются, или {@code null}, если все.
+ * @param astras       астры, которые рассматриваются, или {@code null}, если все астры выбранных карт.
+ */
+public record AnalysisRequest(int fromHarmonic, int toHarmonic, PrecisionClass minPrecision,
+                              double minStrength, List<Chart> charts, List<Astra> astras) {
+
+    public AnalysisRequest {
+        if (fromHarmonic < 1 || toHarmonic < fromHarmonic)
+            throw new IllegalArgumentException("гармоники от %d до %d не образуют диапазона"
+                    .formatted(fromHarmonic, toHarmonic));
+        if (minPrecision == null)
+            minPrecision = PrecisionClass.NONE;
+        charts = charts == null ? null : List.copyOf(charts);
+        astras = astras == null ? null : List.copyOf(astras);
+    }
+
+    /**
+     * @return запрос без ограничений: все гармоники до {@link Settings#getEdgeHarmonic() крайней},
+     * все аспекты и все астры.
+     */
+    public static AnalysisRequest full() {
+        return new AnalysisRequest(1, Settings.getEdgeHarmonic(), PrecisionClass.NONE, 0.0, null, null);
+    }
+
+    /**
+     * @param from нижняя гармоника.
+     * @param to   верхняя гармоника.
+     * @return такой же запрос для указанного диапазона гармоник.
+     */
+    public AnalysisRequest forHarmonics(int from, int to) {
+        return new AnalysisRequest(from, to, minPrecision, minStrength, charts, astras);
+    }
+
+    /**
+     * @param precision наименьший класс точности аспектов.
+     * @return такой же запрос, но только для аспектов не ниже указанной точности.
+     */
+    public AnalysisRequest withMinPrecision(PrecisionClass precision) {
+        return new AnalysisRequest(fromHarmonic, toHarmonic, precision, minStrength, charts, astras);
+    }
+
+    /**
+     * @param strength наименьшая сила аспектов в процентах.
+     * @return такой же запрос, но только для аспектов не слабее указанной силы.
+     */
+    public AnalysisRequest withMinStrength(double strength) {
+        return new AnalysisRequest(fromHarmonic, toHarmonic, minPrecision, strength, charts, astras);
+    }
+
+    /**
+     * @param selected рассматриваемые карты.
+     * @return такой же запрос, но только для астр указанных карт.
+     */
+    public AnalysisRequest forCharts(Chart... selected) {
+        return new AnalysisRequest(fromHarmonic, toHarmonic, minPrecision, minStrength, List.of(selected), astras);
+    }
+
+    /**
+     * @param selected рассматриваемые астры.
+     * @return такой же запрос, но только для указанных астр.
+     */
+    public AnalysisRequest forAstras(Astra... selected) {
+        return new AnalysisRequest(fromHarmonic, toHarmonic, minPrecision, minStrength, charts, List.of(selected));
+    }
+
+    /**
+     * @return {@code true}, если запрос ничего не исключает, кроме гармоник выше верхней;
+     * такая Матрица совпадает с Матрицей без запроса с той же крайней гармоникой.
+     */
+    public boolean isUnrestricted() {
+        return fromHarmonic == 1 && minPrecision.getMinDepth() <= 1 && minStrength <= 0.0
+                && charts == null && astras == null;
+    }
+
+    /**
+     * @param astra астра Матрицы.
+     * @return рассматривается ли астра запросом.
+     */
+    public boolean admits(Astra astra) {
+        return (charts == null || charts.contains(astra.getHeaven()))
+                && (astras == null || astras.stream().anyMatch(a -> a == astra));
+    }
+
+    /**
+     * @param combination сочетание карт.
+     * @return все ли карты сочетания рассматриваются запросом.
+     */
+    public boolean admits(List<Chart> combination) {
+        return charts == null || charts.containsAll(combination);
+    }
+
+    /**
+     * Решает, хранить ли аспект пары.
+     * @param code      {@link AspectList#encode(int, int, int) код} аспекта.
+     * @param clearance зазор аспекта.
+     * @param orb       орбис, с которым рассчитана пара.
+     * @return {@code true}, если аспект не ниже требуемых точности и силы
+     * и связывает пару хотя бы в одной гармонике диапазона.
+     */
+    boolean admits(long code, double clearance, double orb) {
+        int numeric = AspectList.numericOf(code), depth = AspectList.depthOf(code);
+        if (depth < minPrecision.getMinDepth()) return false;
+        if (CelestialMechanics.calculateStrength(orb, clearance) < minStrength) return false;
+        int multiple = (fromHarmonic + numeric - 1) / numeric;
+        return multiple * numeric <= toHarmonic && multiple <= depth;
+    }
+}
@@ -0,0 +1,181 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import ru.swetophor.astrowidjaspring.utils.CelestialMechanics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Таблица кандидатов в аспекты по квантованной дуге.
+ * <p>
+ * При заданных орбисе и крайней гармонике набор гармоник, в которых дуга
+ * предстаёт соединением, зависит только от самой дуги. Диапазон дуг 0°…180°
+ * делится на ячейки по {@link #CELLS_PER_DEGREE} на градус, и для каждой ячейки
+ * заранее записываются гармоники, для которых хоть одна дуга ячейки попадает
+ * в орбис соединения. Классификация пары сводится к выборке строки таблицы
+ * и точной проверке её немногих гармоник тем же условием, что при переборе
+ * ({@link ResonanceBatch#collectAspects(double, double, int[], int, int, ResonanceBlock)}),
+ * поэтому результат совпадает с полным перебором.
+ * <p>
+ * Таблицы строятся при первом запросе и хранятся общими для всех Матриц,
+ * по одной на каждое сочетание орбиса и крайней гармоники; для
+ * {@link ResonanceProfile профиля} с сокращением орбиса разных карт их две.
+ * Таблица до гармоники {@code H} с орбисом {@code orb} держит около
+ * {@code H²/4 + H·orb·60} гармоник (для 108-й гармоники и орбиса 12° — около 80 тысяч,
+ * т.е. треть мегабайта) и строится за то же время. Чтобы смены настроек не копили
+ * таблицы, хранится не больше {@link #MAX_TABLES} последних построенных; вытесненная
+ * таблица, если понадобится снова, строится заново.
+ * Строки таблицы лежат в сжатом построчном виде: гармоники ячейки {@code c}
+ * занимают в {@link #harmonics} позиции с {@code offsets[c]} до {@code offsets[c + 1]},
+ * по возрастанию.
+ */
+final class ArcLookupTable {
+    /**
+     * Сколько ячеек приходится на градус дуги (т.е. ячейка в одну угловую минуту).
+     */
+    static final int CELLS_PER_DEGREE = 60;
+    private static final int CELLS = (int) CelestialMechanics.HALF_CIRCLE * CELLS_PER_DEGREE;
+    /**
+     * Запас на погрешность вычислений при разметке ячеек, в градусах.
+     */
+    private static final double SLACK = 1e-9;
+
+    /**
+     * Сколько таблиц хранится одновременно: хватает на несколько профилей сразу.
+     */
+    static final int MAX_TABLES = 8;
+
+    private static final Map<Key, ArcLookupTable> TABLES = new ConcurrentHashMap<>();
+    /**
+     * Ключи хранимых таблиц в порядке построения, от давних к новым.
+     */
+    private static final Queue<Key> BUILT = new ConcurrentLinkedQueue<>();
+
+    private record Key(double orb, int edgeHarmonic) {
+    }
+
+    private final double orb;
+    private final int[] offsets;
+    private final int[] harmonics;
+
+    /**
+     * Выдаёт общую таблицу для орбиса и крайней гармоники, при необходимости строя её.
+     * Если таблиц становится больше {@link #MAX_TABLES}, давнее всего построенные
+     * забываются.
+     * @param orb          орбис для соединений.
+     * @param edgeHarmonic до какой гармоники рассчитываются резонансы.
+     * @return таблица кандидатов.
+     */
+    static ArcLookupTable of(double orb, int edgeHarmonic) {
+        Key key = new Key(orb, edgeHarmonic);
+        ArcLookupTable table = TABLES.get(key);
+        if (table != null) return table;
+        table = TABLES.computeIfAbsent(key, k -> {
+            BUILT.add(k);
+            return new ArcLookupTable(k.orb(), k.edgeHarmonic());
+        });
+        while (TABLES.size() > MAX_TABLES) {
+            Key eldest = BUILT.poll();
+            if (eldest == null) break;
+            TABLES.remove(eldest);
+        }
+        return table;
+    }
+
+    /**
+     * @return сколько таблиц сейчас хранится.
+     */
+    static int cachedTables() {
+        return TABLES.size();
+    }
+
+    private ArcLookupTable(double orb, int edgeHarmonic) {
+        this.orb = orb;
+        offsets = new int[CELLS + 1];
+        mark(edgeHarmonic, null);
+        for (int c = 0; c < CELLS; c++)
+            offsets[c + 1] += offsets[c];
+        harmonics = new int[offsets[CELLS]];
+        mark(edgeHarmonic, offsets.clone());
+    }
+
+    /**
+     * Размечает ячейки, покрытые орбисами соединения каждой гармоники. Вокруг каждой
+     * дуги точного аспекта {@code 360°·k / h} отмечаются ячейки, задетые интервалом
+     * {@code ±orb / h}. Без курсоров только подсчитывает гармоники ячеек (в
+     * {@code offsets[c + 1]}), с курсорами записывает их; гармоники перебираются по
+     * возрастанию, так что и в строках они получаются упорядоченными.
+     * @param edgeHarmonic до какой гармоники размечать.
+     * @param cursor       позиция записи для каждой ячейки, или {@code null} для подсчёта.
+     */
+    private void mark(int edgeHarmonic, int[] cursor) {
+        for (int h = 1; h <= edgeHarmonic; h++) {
+            double single = CelestialMechanics.CIRCLE / h;
+            double reach = orb / h + SLACK;
+            int last = -1;
+            for (int k = 0; single * k - reach <= CelestialMechanics.HALF_CIRCLE; k++) {
+                int from = Math.max(cellOf(single * k - reach), last + 1);
+                int to = cellOf(single * k + reach);
+                for (int c = from; c <= to; c++)
+                    if (cursor == null) offsets[c + 1]++;
+                    else harmonics[cursor[c]++] = h;
+                last = Math.max(last, to);
+            }
+        }
+    }
+
+    private static int cellOf(double arc) {
+        return Math.max(0, Math.min(CELLS - 1, (int) Math.floor(arc * CELLS_PER_DEGREE)));
+    }
+
+    /**
+     * Находит аспекты для дуги по строке таблицы и дописывает их
+     * к последней открытой паре блока.
+     * @param arc   дуга между астрами, от 0° до 180°.
+     * @param above гармоника, выше которой проверяются кандидаты (0 — все кандидаты);
+     *              меньшие гармоники считаются уже проверенными и дописанными в блок.
+     * @param block блок, последняя открытая пара которого принимает аспекты.
+     */
+    void collectAspects(double arc, int above, ResonanceBlock block) {
+        int cell = cellOf(arc);
+        ResonanceBatch.collectAspects(arc, orb, harmonics, firstAbove(cell, above), offsets[cell + 1], block);
+    }
+
+    /**
+     * Находит аспекты для дуги в угловых секундах, как {@link #collectAspects(double, int, ResonanceBlock)},
+     * но проверяя кандидатов в целых числах.
+     * @param arcSeconds дуга между астрами в угловых секундах, от 0 до 648000.
+     * @param above      гармоника, выше которой проверяются кандидаты (0 — все кандидаты).
+     * @param block      блок, последняя открытая пара которого принимает аспекты.
+     */
+    void collectArcSecondAspects(int arcSeconds, int above, ResonanceBlock block) {
+        int cell = Math.min(CELLS - 1, arcSeconds / (3600 / CELLS_PER_DEGREE));
+        ResonanceBatch.collectArcSecondAspects(arcSeconds, orb, harmonics, firstAbove(cell, above),
+                offsets[cell + 1], block);
+    }
+
+    /**
+     * @param arc дуга между астрами, от 0° до 180°.
+     * @return копия строки таблицы для дуги: возрастающие гармоники, в которых
+     * дуга может предстать соединением.
+     */
+    int[] candidates(double arc) {
+        int cell = cellOf(arc);
+        return Arrays.copyOfRange(harmonics, offsets[cell], offsets[cell + 1]);
+    }
+
+    /**
+     * @param cell  номер ячейки.
+     * @param above гармоника, начиная с которой (не включая) нужны кандидаты.
+     * @return позиция первой гармоники строки ячейки, большей указанной.
+     */
+    private int firstAbove(int cell, int above) {
+        int from = offsets[cell];
+        if (above <= 0) return from;
+        int found = Arrays.binarySearch(harmonics, from, offsets[cell + 1], above + 1);
+        return found >= 0 ? found : -found - 1;
+    }
+}
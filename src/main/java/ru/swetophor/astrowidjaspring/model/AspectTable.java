@@ -13,9 +13,15 @@ public class AspectTable {
 
     public AspectTable(AstroMatrix matrix) {
         heavens = matrix.getHeavens();
+        AnalysisRequest request = matrix.getRequest();
         matrix.heavenCombinations(true)
-                .forEach(combination -> tables.put(combination, new ArrayList<>()));
-        matrix.stream().forEach(this::addResonance);
+                .forEach(combination -> tables.put(combination, new ArrayList<>(
+                        (combination.size() == 1 ?
+                                matrix.getResonancesFor(combination.get(0)) :
+                                matrix.getResonancesFor(combination.get(0), combination.get(1)))
+                                .stream()
+                                .filter(r -> request.admits(r.getAstra_1()) && request.admits(r.getAstra_2()))
+                                .toList())));
     }
 
     public void addResonance(ResonanceBatch resonance) {
@@ -43,6 +49,6 @@ public class AspectTable {
         return sb.toString();
     }
 
-    // TODO: требуется сделать настраиваемый отчёт по резонансам:
-    // отсечки по номеру гармоники и/или силе, виды сортировки
+    // TODO: требуется сделать настраиваемый отчёт по резонансам: виды сортировки
+    //  (отсечки по номеру гармоники и силе задаются запросом анализа Матрицы)
 }
@@ -1,11 +1,17 @@
 package ru.swetophor.astrowidjaspring.model;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import ru.swetophor.astrowidjaspring.config.Settings;
 import ru.swetophor.astrowidjaspring.model.astro.Astra;
 import ru.swetophor.astrowidjaspring.model.chart.Chart;
+import ru.swetophor.astrowidjaspring.utils.CelestialMechanics;
 
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -13,7 +19,7 @@ import java.util.stream.Stream;
 import static java.util.stream.IntStream.range;
 
 @Getter
-public class AstroMatrix {
+public class AstroMatrix implements AutoCloseable {
     /**
      * Карты, на основе которых рассчитана Матрица,
      * в том порядке, как переданы аргументы в конструктор.
@@ -24,29 +30,152 @@ public class AstroMatrix {
      * следуют в порядке, как в {@link #heavens}, в каждом блоке астры
      * следуют в порядке, возвращённом {@link Chart#getAstras() getAstras()}.
       */
-    private final List<Astra> allAstras;
+    private List<Astra> allAstras;
     /**
-     * Мапа в ОЗУ для быстрого получения номера астры в массиве {@link #allAstras}.
-     * Реально ли это быстрее, чем {@code indexOf()}, не факт, но всё же.
+     * Слоты астр: плотные номера {@code 0..N-1}, совпадающие с положением астры
+     * в {@link #allAstras}. Назначаются при построении (и пересматриваются при
+     * добавлении или удалении астр); дальше вся работа внутри Матрицы, включая
+     * поиск паттернов, ведётся по слотам, а эта мапа нужна только для перевода
+     * ссылки на астру в слот. Сопоставление идёт по идентичности объекта астры.
      */
-    private final Map<Chart, Map<Astra, Integer>> index;
+    @Getter(AccessLevel.NONE)
+    private Map<Astra, Integer> slots;
     /**
-     * Треугольный двумерный массив, отражающий все возможные парные отношения
+     * Границы блоков карт в {@link #allAstras}: астры карты {@code heavens[c]}
+     * занимают слоты с {@code chartBlocks[c]} до {@code chartBlocks[c + 1]} (не включая).
+     */
+    @Getter(AccessLevel.NONE)
+    private int[] chartBlocks;
+    /**
+     * Зодиакальные позиции астр по слотам, снятые при построении Матрицы
+     * и обновляемые при пересчёте астр, чтобы расчёт пар шёл по примитивному
+     * массиву, а не через вызовы {@link ru.swetophor.astrowidjaspring.model.astro.ZodiacPoint ZodiacPoint}.
+     * В {@link ResonanceProfile#arcSeconds() режиме угловых секунд} не снимаются.
+     */
+    @Getter(AccessLevel.NONE)
+    private double[] positions;
+    /**
+     * Позиции астр по слотам в целых угловых секундах; снимаются вместо
+     * {@link #positions} в {@link ResonanceProfile#arcSeconds() режиме угловых секунд}.
+     */
+    @Getter(AccessLevel.NONE)
+    private int[] arcSeconds;
+    /**
+     * Хранилище резонансов, отражающее все возможные парные отношения
      * между всеми астрами Матрицы. Если общее количество астр N,
-     * то длина первого ряда равна N - 1, каждого последующего — на один меньше.
+     * то хранится {@code N * (N - 1) / 2} пар, упорядоченных треугольником:
+     * длина первого ряда равна N - 1, каждого последующего — на один меньше.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private ResonanceStore store;
+    /**
+     * Способ хранения, которым создано {@link #store хранилище}; нужен, чтобы
+     * пересоздать хранилище при добавлении или удалении астр.
+     */
+    private final MatrixStorage storage;
+    /**
+     * Для Матрицы, строящейся {@link MatrixBuild#LAZY лениво}, отмечает номера
+     * ещё не рассчитанных пар; для Матрицы, рассчитанной сразу, {@code null}.
+     */
+    @Getter(AccessLevel.NONE)
+    private BitSet pending;
+    /**
+     * Найденные паттерны: по номеру гармоники и сочетанию рассматриваемых карт.
+     * При изменении астр сбрасываются только записи тех гармоник,
+     * по которым у изменённых астр были или появились резонансы.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<Integer, Map<List<Chart>, List<Pattern>>> patternCache = new ConcurrentHashMap<>();
+    /**
+     * Построенные графы связей по номеру гармоники. Сбрасываются вместе
+     * с паттернами тех же гармоник, а при смене состава астр — целиком,
+     * поскольку меняются номера астр.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<Integer, HarmonicGraph> graphCache = new ConcurrentHashMap<>();
+    /**
+     * До какой гармоники Матрица выдаёт резонансы. Может быть ниже гармоники,
+     * до которой пары рассчитаны в хранилище ({@link ResonanceProfile#edgeHarmonic()
+     * крайней гармоники профиля}): тогда резонансы выдаются отфильтрованными.
      */
-    private final ResonanceBatch[][] matrix;
+    private int edgeHarmonic;
+    /**
+     * Все настройки, с которыми рассчитаны резонансы в хранилище Матрицы.
+     */
+    private ResonanceProfile profile;
+    /**
+     * {@link AnalysisRequest Запрос анализа}, по которому построена Матрица:
+     * какие гармоники, аспекты и астры рассчитываются и хранятся.
+     */
+    private final AnalysisRequest request;
+    /**
+     * Для каждого слота: рассматривается ли астра {@link #request запросом}.
+     */
+    @Getter(AccessLevel.NONE)
+    private boolean[] admitted;
+    /**
+     * Сколько проверок гармоник (пар, умноженных на крайнюю гармонику) выполняет одна
+     * подзадача при параллельном построении, чтобы не дробить работу слишком мелко.
+     */
+    private static final int PARALLEL_GRAIN = 1 << 15;
 
     /**
      * Создание матрицы резонансов для некоторого количества
      * астрологических карт.
      * При этом для любой пары астр простраиваются пучки резонансов
      * до гармоники, указанной в {@link Settings#getEdgeHarmonic()}.
+     * Способ хранения резонансов берётся из {@link Settings#getMatrixStorage()},
+     * способ построения — из {@link Settings#getMatrixBuild()}.
      * @param charts карты, предоставляющие наборы астр для анализа.
      */
     public AstroMatrix(Chart... charts) {
+        this(Settings.getMatrixStorage(), Settings.getMatrixBuild(), charts);
+    }
+
+    /**
+     * Создание матрицы резонансов для некоторого количества астрологических карт
+     * по запросу анализа: рассчитываются только нужные запросу гармоники, аспекты и пары.
+     * Способы хранения и построения берутся из {@link Settings настроек}.
+     * @param request запрос анализа.
+     * @param charts  карты, предоставляющие наборы астр для анализа.
+     */
+    public AstroMatrix(AnalysisRequest request, Chart... charts) {
+        this(request, Settings.getMatrixStorage(), Settings.getMatrixBuild(), charts);
+    }
+
+    /**
+     * Создание матрицы резонансов для некоторого количества
+     * астрологических карт с указанным способом хранения резонансов.
+     * При этом для любой пары астр простраиваются пучки резонансов
+     * до гармоники, указанной в {@link Settings#getEdgeHarmonic()}.
+     * Если включено {@link Settings#isMatrixPersistence() сохранение Матриц}, то Матрица
+     * для тех же карт и настроек открывается из файла без расчёта, а рассчитанная
+     * сразу (не лениво) Матрица сохраняется.
+     * @param storage способ хранения рассчитанных резонансов.
+     * @param build   рассчитывать ли пары сразу (в одном потоке или в общем пуле
+     *                {@link ForkJoinPool#commonPool()}) или по первому обращению.
+     * @param charts  карты, предоставляющие наборы астр для анализа.
+     */
+    public AstroMatrix(MatrixStorage storage, MatrixBuild build, Chart... charts) {
+        this(AnalysisRequest.full(), storage, build, charts);
+    }
+
+    /**
+     * Создание матрицы резонансов для некоторого количества астрологических карт
+     * по запросу анализа, с указанным способом хранения резонансов.
+     * Пары рассчитываются до верхней гармоники запроса; пары не выбранных запросом астр
+     * остаются пустыми, а у остальных хранятся только принятые запросом аспекты.
+     * Сохраняется и открывается из файла только Матрица по
+     * {@link AnalysisRequest#isUnrestricted() неограничивающему} запросу.
+     * @param request запрос анализа.
+     * @param storage способ хранения рассчитанных резонансов.
+     * @param build   рассчитывать ли пары сразу или по первому обращению.
+     * @param charts  карты, предоставляющие наборы астр для анализа.
+     */
+    public AstroMatrix(AnalysisRequest request, MatrixStorage storage, MatrixBuild build, Chart... charts) {
         // фиксация массива карт
         heavens = charts;
+        this.request = request;
 
         System.out.println("Строим новую АстроМатрицу для [" +
                 Arrays.stream(heavens).map(Chart::getName)
@@ -56,40 +185,482 @@ public class AstroMatrix {
         allAstras = Arrays.stream(heavens)
                 .flatMap(c -> c.getAstras().stream())
                 .toList();
+        chartBlocks = markChartBlocks();
 
         long before = System.nanoTime();    // monitor
-        // построение индекса астр
-        index = new HashMap<>();
-        int counter = 0;
-        for (Chart chart : heavens) {
-            index.put(chart, new HashMap<>());
-            for (Astra astra : chart.getAstras())
-                index.get(chart).put(astra, counter++);
-        }
+        // назначение слотов астр
+        slots = assignSlots();
+        admitted = admittedSlots();
         System.out.println("Индекс построен за " + ((double) (System.nanoTime() - before) / 1000.0) + " мс."); // monitor
 
         // построение матрицы резонансов
-        matrix = new ResonanceBatch[allAstras.size()][allAstras.size()];
-        for (int i = 0; i < allAstras.size() - 1; i++)
-            for (int j = i + 1; j < allAstras.size(); j++)
-                matrix[i][j] = new ResonanceBatch(allAstras.get(i), allAstras.get(j));
+        profile = ResonanceProfile.current().withEdgeHarmonic(request.toHarmonic());
+        edgeHarmonic = profile.edgeHarmonic();
+        takePositions();
+        this.storage = storage;
+        Path archive = Settings.isMatrixPersistence() && request.isUnrestricted() ?
+                MappedResonanceStore.fileFor(allAstras, profile) : null;
+        MappedResonanceStore saved = archive == null ? null :
+                MappedResonanceStore.open(archive, allAstras, profile, storage);
+        if (saved != null) {
+            store = saved;
+            pending = null;
+            return;
+        }
+        store = storage.createStore(allAstras, profile);
+        int n = allAstras.size();
+        switch (build) {
+            case LAZY -> {
+                pending = new BitSet(ResonanceStore.pairCount(n));
+                pending.set(0, ResonanceStore.pairCount(n));
+            }
+            case PARALLEL -> {
+                pending = null;
+                ForkJoinPool.commonPool().invoke(new TriangleFiller(0, ResonanceStore.pairCount(n)));
+            }
+            default -> {
+                pending = null;
+                for (int i = 0; i < n - 1; i++)
+                    fillPairs(ResonanceStore.pairIndex(i, i + 1, n), ResonanceStore.pairIndex(i, n - 1, n) + 1);
+            }
+        }
+        if (archive != null && pending == null)
+            MappedResonanceStore.save(archive, store, allAstras, profile);
     }
 
     /**
-     * Внутренний метод определения номера астры в {@link #allAstras}
-     * с помощью {@link #index}
+     * Сообщает, что пара астр предстаёт соединением в указанной гармонике,
+     * по гармонической маске из хранилища. Пара ленивой Матрицы
+     * при необходимости сначала рассчитывается.
+     * @param i        номер первой астры пары.
+     * @param j        номер второй астры пары, больший первого.
+     * @param harmonic проверяемая гармоника.
+     * @return {@code true}, если астры связаны по этой гармонике.
+     */
+    private boolean resonates(int i, int j, int harmonic) {
+        if (harmonic > edgeHarmonic) return false;
+        if (pending != null) storedPair(i, j);
+        return store.resonates(i, j, harmonic);
+    }
+
+    /**
+     * Назначает слоты астрам по текущему содержимому {@link #allAstras}.
+     * @return мапу, дающую для каждой астры её номер в объединённом списке.
+     */
+    private Map<Astra, Integer> assignSlots() {
+        Map<Astra, Integer> assigned = new IdentityHashMap<>(allAstras.size());
+        for (int i = 0; i < allAstras.size(); i++)
+            assigned.put(allAstras.get(i), i);
+        return assigned;
+    }
+
+    /**
+     * Отмечает слоты астр, которые рассматривает {@link #request запрос анализа}.
+     * @return для каждого слота, рассматривается ли его астра.
+     */
+    private boolean[] admittedSlots() {
+        boolean[] mask = new boolean[allAstras.size()];
+        for (int i = 0; i < allAstras.size(); i++)
+            mask[i] = request.admits(allAstras.get(i));
+        return mask;
+    }
+
+    /**
+     * Снимает позиции астр по текущему содержимому {@link #allAstras}: в градусах
+     * в {@link #positions} либо, в режиме угловых секунд, в {@link #arcSeconds}.
+     */
+    private void takePositions() {
+        int n = allAstras.size();
+        if (profile.arcSeconds()) {
+            positions = null;
+            arcSeconds = new int[n];
+            for (int i = 0; i < n; i++)
+                arcSeconds[i] = allAstras.get(i).getArcSeconds();
+        } else {
+            arcSeconds = null;
+            positions = new double[n];
+            for (int i = 0; i < n; i++)
+                positions[i] = allAstras.get(i).getZodiacPosition();
+        }
+    }
+
+    /**
+     * Размечает блоки карт в объединённом списке астр по текущему количеству астр в картах.
+     * @return массив границ блоков, как описано для {@link #chartBlocks}.
+     */
+    private int[] markChartBlocks() {
+        int[] blocks = new int[heavens.length + 1];
+        for (int c = 0; c < heavens.length; c++)
+            blocks[c + 1] = blocks[c] + heavens[c].getAstras().size();
+        return blocks;
+    }
+
+    /**
+     * @param chart карта.
+     * @return номер карты в {@link #heavens}, или -1, если карта не входит в Матрицу.
+     */
+    private int chartNumber(Chart chart) {
+        for (int c = 0; c < heavens.length; c++)
+            if (heavens[c] == chart) return c;
+        return -1;
+    }
+
+    /**
+     * @param chart карта.
+     * @return {@code true}, если карта входит в Матрицу.
+     */
+    private boolean hasChart(Chart chart) {
+        return chartNumber(chart) != -1;
+    }
+
+    /**
+     * Выдаёт из {@link #store хранилища} резонанс пары астр. Если Матрица ленивая
+     * и пара ещё не рассчитывалась, сначала рассчитывает её и сохраняет,
+     * так что каждая пара рассчитывается не более одного раза.
+     * @param i номер первой астры пары.
+     * @param j номер второй астры пары, больший первого.
+     * @return объект резонанса для указанной пары.
+     */
+    private ResonanceBatch pair(int i, int j) {
+        return storedPair(i, j).limitedTo(edgeHarmonic);
+    }
+
+    /**
+     * Выдаёт резонанс пары, как {@link #pair(int, int)}, но в том виде, как он
+     * рассчитан в хранилище, без ограничения выдаваемой крайней гармоникой.
+     * @param i номер первой астры пары.
+     * @param j номер второй астры пары, больший первого.
+     * @return объект резонанса для указанной пары.
+     */
+    private ResonanceBatch storedPair(int i, int j) {
+        if (pending == null) return store.read(i, j);
+        synchronized (pending) {
+            int p = ResonanceStore.pairIndex(i, j, allAstras.size());
+            if (pending.get(p)) {
+                ResonanceBlock block = new ResonanceBlock(profile.edgeHarmonic());
+                computePair(i, j, block);
+                store.write(block);
+                pending.clear(p);
+            }
+            return store.read(i, j);
+        }
+    }
+
+    /**
+     * Рассчитывает резонансы для подряд идущих (в порядке обхода треугольника)
+     * пар астр и сохраняет их в {@link #store хранилище} одним блоком.
+     * @param from номер первой рассчитываемой пары.
+     * @param to   номер, следующий за последней рассчитываемой парой.
+     */
+    private void fillPairs(int from, int to) {
+        int n = allAstras.size();
+        ResonanceBlock block = new ResonanceBlock(profile.edgeHarmonic());
+        int i = ResonanceStore.rowOf(from, n);
+        int j = from - ResonanceStore.pairIndex(i, i + 1, n) + i + 1;
+        for (int p = from; p < to; p++) {
+            computePair(i, j, block);
+            if (++j == n) {
+                i++;
+                j = i + 1;
+            }
+        }
+        store.write(block);
+    }
+
+    /**
+     * Рассчитывает аспекты для пары астр и добавляет их в блок.
+     * @param i     номер первой астры пары.
+     * @param j     номер второй астры пары.
+     * @param block блок, принимающий рассчитанную пару.
+     */
+    private void computePair(int i, int j, ResonanceBlock block) {
+        double orb = profile.orbFor(allAstras.get(i), allAstras.get(j));
+        boolean wanted = admitted[i] && admitted[j];
+        ArcLookupTable table = ArcLookupTable.of(orb, profile.edgeHarmonic());
+        if (arcSeconds != null) {
+            int arc = CelestialMechanics.arcBetween(arcSeconds[i], arcSeconds[j]);
+            block.openPair(i, j, CelestialMechanics.fromArcSeconds(arc), orb);
+            if (wanted) table.collectArcSecondAspects(arc, 0, block);
+        } else {
+            double arc = CelestialMechanics.arcBetween(positions[i], positions[j]);
+            block.openPair(i, j, arc, orb);
+            if (wanted) table.collectAspects(arc, 0, block);
+        }
+        if (!request.isUnrestricted())
+            block.retainAspects(request);
+    }
+
+    /**
+     * Дописывает в блок пару с уже рассчитанными аспектами и досчитывает
+     * её аспекты в гармониках выше прежней крайней, до крайней гармоники профиля.
+     * Прежние аспекты при этом не меняются: взятие гармоники зависит только
+     * от меньших гармоник.
+     * @param i       номер первой астры пары.
+     * @param j       номер второй астры пары.
+     * @param known   резонанс пары, рассчитанный до прежней крайней гармоники.
+     * @param covered прежняя крайняя гармоника.
+     * @param block   блок, принимающий пару.
+     */
+    private void extendPair(int i, int j, ResonanceBatch known, int covered, ResonanceBlock block) {
+        known.copyInto(i, j, block);
+        ArcLookupTable table = ArcLookupTable.of(known.getOrb(), profile.edgeHarmonic());
+        if (arcSeconds != null)
+            table.collectArcSecondAspects(CelestialMechanics.arcBetween(arcSeconds[i], arcSeconds[j]), covered, block);
+        else
+            table.collectAspects(known.getArc(), covered, block);
+    }
+
+    /**
+     * Задача параллельного заполнения Матрицы. Делит отрезок пар в порядке
+     * обхода треугольника пополам, пока в куске больше пар, чем нужно для
+     * {@link #PARALLEL_GRAIN}. Поскольку ряды треугольника к концу укорачиваются,
+     * деление идёт по числу пар, а не по рядам, и куски получаются равными по работе.
+     */
+    private class TriangleFiller extends RecursiveAction {
+        private final int from, to;
+
+        TriangleFiller(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if ((long) (to - from) * edgeHarmonic <= PARALLEL_GRAIN) {
+                fillPairs(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new TriangleFiller(from, middle), new TriangleFiller(middle, to));
+        }
+    }
+
+    /**
+     * Определяет слот астры, т.е. её номер в {@link #allAstras}.
+     * По слотам работают целочисленные варианты методов Матрицы.
      * @param astra ссылка на астру.
      * @return  номер указанной астры в объединённом массиве. Если указанной астры
      * нет ни в одной карте, то -1.
      */
-    private int astraIndex(Astra astra) {
-        Integer i;
-        try {
-            i = index.get(astra.getHeaven()).get(astra);
-        } catch (NullPointerException e) {
-            return -1;
+    public int slotOf(Astra astra) {
+        return slots.getOrDefault(astra, -1);
+    }
+
+    /**
+     * Переносит астру на новую зодиакальную позицию и пересчитывает её резонансы,
+     * как описано в {@link #updateAstra(Astra)}.
+     * @param astra          астра одной из карт Матрицы.
+     * @param zodiacPosition новая зодиакальная координата в градусах.
+     * @throws IllegalArgumentException если астра не найдена в Матрице.
+     */
+    public void moveAstra(Astra astra, double zodiacPosition) {
+        astra.setZodiacPosition(zodiacPosition);
+        updateAstra(astra);
+    }
+
+    /**
+     * Пересчитывает резонансы астры, позиция которой изменилась, со всеми
+     * остальными астрами Матрицы, т.е. только её ряд и столбец: {@code N - 1}
+     * пар вместо {@code N * (N - 1) / 2}. Найденные ранее паттерны сбрасываются
+     * только для гармоник, по которым астра имела или приобрела связи.
+     * В ленивой Матрице ряд астры при этом рассчитывается сразу.
+     * @param astra астра одной из карт Матрицы.
+     * @throws IllegalArgumentException если астра не найдена в Матрице.
+     */
+    public void updateAstra(Astra astra) {
+        int k = slotOf(astra);
+        if (k == -1) throw new IllegalArgumentException("Астра %s не найдена"
+                .formatted(astra.getSymbolWithOwner()));
+        BitSet affected = new BitSet(profile.edgeHarmonic() + 1);
+        markHarmonics(k, affected);
+
+        if (arcSeconds != null)
+            arcSeconds[k] = astra.getArcSeconds();
+        else
+            positions[k] = astra.getZodiacPosition();
+        int n = allAstras.size();
+        ResonanceBlock block = new ResonanceBlock(profile.edgeHarmonic());
+        for (int x = 0; x < n; x++)
+            if (x != k)
+                computePair(Math.min(k, x), Math.max(k, x), block);
+        store.write(block);
+        if (pending != null)
+            for (int x = 0; x < n; x++)
+                if (x != k)
+                    pending.clear(ResonanceStore.pairIndex(Math.min(k, x), Math.max(k, x), n));
+
+        markHarmonics(k, affected);
+        affected.stream().forEach(h -> {
+            patternCache.remove(h);
+            graphCache.remove(h);
+        });
+    }
+
+    /**
+     * Добавляет астру в одну из карт Матрицы и рассчитывает её резонансы
+     * со всеми остальными астрами; резонансы между прежними астрами переносятся
+     * без пересчёта. Если в карте уже была астра с тем же именем, она заменяется
+     * новой, как это делает {@link Chart#addAstra(Astra)}. Если астра уже есть в карте
+     * (например, её добавила другая Матрица по той же карте), карта не меняется,
+     * а Матрица только приводится в соответствие с ней.
+     * @param chart карта, в которую добавляется астра.
+     * @param astra добавляемая астра.
+     * @throws IllegalArgumentException если карта не входит в Матрицу.
+     */
+    public void addAstra(Chart chart, Astra astra) {
+        if (!hasChart(chart)) throw new IllegalArgumentException("Карта %s не входит в Матрицу"
+                .formatted(chart.getName()));
+        if (!chart.getAstras().contains(astra))
+            chart.addAstra(astra);
+        synchronizeAstras();
+    }
+
+    /**
+     * Удаляет астру из её карты и все её резонансы из Матрицы;
+     * резонансы между остальными астрами переносятся без пересчёта.
+     * Если астры в карте уже нет (например, её удалила другая Матрица
+     * по той же карте), Матрица только приводится в соответствие с картой.
+     * @param astra удаляемая астра.
+     * @throws IllegalArgumentException если карта астры не входит в Матрицу.
+     */
+    public void removeAstra(Astra astra) {
+        Chart chart = astra.getHeaven();
+        if (!hasChart(chart)) throw new IllegalArgumentException("Астра %s не найдена"
+                .formatted(astra.getSymbolWithOwner()));
+        chart.getAstras().remove(astra);
+        synchronizeAstras();
+    }
+
+    /**
+     * Приводит список астр и хранилище Матрицы в соответствие с текущим
+     * содержимым её карт. Резонансы пар, обе астры которых уже были в Матрице,
+     * копируются из прежнего хранилища (нерассчитанные пары ленивой Матрицы
+     * остаются нерассчитанными), резонансы новых астр рассчитываются.
+     * Паттерны сбрасываются для гармоник, по которым связаны
+     * выбывшие или появившиеся астры.
+     */
+    private void synchronizeAstras() {
+        List<Astra> updated = Arrays.stream(heavens)
+                .flatMap(c -> c.getAstras().stream())
+                .toList();
+        int n = updated.size(), oldN = allAstras.size();
+        int[] previous = new int[n];
+        for (int k = 0; k < n; k++)
+            previous[k] = slotOf(updated.get(k));
+
+        BitSet affected = new BitSet(profile.edgeHarmonic() + 1);
+        Set<Astra> remaining = Collections.newSetFromMap(new IdentityHashMap<>());
+        remaining.addAll(updated);
+        for (int k = 0; k < oldN; k++)
+            if (!remaining.contains(allAstras.get(k)))
+                markHarmonics(k, affected);
+
+        ResonanceStore oldStore = store;
+        BitSet oldPending = pending;
+        allAstras = updated;
+        chartBlocks = markChartBlocks();
+        slots = assignSlots();
+        admitted = admittedSlots();
+        takePositions();
+        store = storage.createStore(allAstras, profile);
+        pending = oldPending == null ? null : new BitSet(ResonanceStore.pairCount(n));
+
+        ResonanceBlock block = new ResonanceBlock(profile.edgeHarmonic());
+        for (int i = 0; i < n - 1; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (previous[i] == -1 || previous[j] == -1) {
+                    computePair(i, j, block);
+                    continue;
+                }
+                int oi = Math.min(previous[i], previous[j]), oj = Math.max(previous[i], previous[j]);
+                if (oldPending != null && oldPending.get(ResonanceStore.pairIndex(oi, oj, oldN))) {
+                    pending.set(ResonanceStore.pairIndex(i, j, n));
+                    continue;
+                }
+                oldStore.read(oi, oj).copyInto(i, j, block);
+            }
+            store.write(block);
+            block.clear();
+        }
+
+        oldStore.close();
+
+        for (int k = 0; k < n; k++)
+            if (previous[k] == -1)
+                markHarmonics(k, affected);
+        affected.stream().forEach(patternCache::remove);
+        graphCache.clear();
+    }
+
+    /**
+     * Меняет крайнюю гармонику, до которой Матрица выдаёт резонансы и ищет паттерны.
+     * При повышении сверх уже рассчитанной каждая рассчитанная пара досчитывается
+     * только в гармониках от прежней крайней до новой; при понижении ничего не
+     * пересчитывается, а резонансы выдаются отфильтрованными, так что последующее
+     * повышение в пределах рассчитанного обходится без расчёта. Найденные паттерны
+     * и графы сохраняются для гармоник, не превышающих ни прежней, ни новой крайней.
+     * Не должен вызываться одновременно с другими обращениями к Матрице.
+     * @param harmonic новая крайняя гармоника.
+     * @throws IllegalArgumentException если гармоника меньше единицы.
+     * @throws IllegalStateException    если Матрица построена по ограничивающему запросу
+     *                                  и гармоника выше его верхней: отфильтрованные пары не досчитать.
+     */
+    public void setEdgeHarmonic(int harmonic) {
+        if (harmonic < 1)
+            throw new IllegalArgumentException("крайняя гармоника должна быть не меньше 1");
+        if (harmonic > profile.edgeHarmonic() && !request.isUnrestricted())
+            throw new IllegalStateException("Матрица построена по запросу до %d гармоники"
+                    .formatted(profile.edgeHarmonic()));
+        if (harmonic > profile.edgeHarmonic())
+            extendCoverage(harmonic);
+        int kept = Math.min(edgeHarmonic, harmonic);
+        edgeHarmonic = harmonic;
+        patternCache.keySet().removeIf(h -> h > kept);
+        graphCache.keySet().removeIf(h -> h > kept);
+    }
+
+    /**
+     * Переносит все рассчитанные пары в новое хранилище, досчитывая их
+     * до указанной гармоники. Нерассчитанные пары ленивой Матрицы остаются
+     * нерассчитанными и будут рассчитаны сразу до новой гармоники.
+     * @param harmonic гармоника, до которой досчитываются пары.
+     */
+    private void extendCoverage(int harmonic) {
+        int covered = profile.edgeHarmonic();
+        profile = profile.withEdgeHarmonic(harmonic);
+        ResonanceStore oldStore = store;
+        ResonanceStore extended = storage.createStore(allAstras, profile);
+        int n = allAstras.size();
+        ResonanceBlock block = new ResonanceBlock(harmonic);
+        for (int i = 0; i < n - 1; i++) {
+            for (int j = i + 1; j < n; j++)
+                if (pending == null || !pending.get(ResonanceStore.pairIndex(i, j, n)))
+                    extendPair(i, j, oldStore.read(i, j), covered, block);
+            extended.write(block);
+            block.clear();
+        }
+        store = extended;
+        oldStore.close();
+    }
+
+    /**
+     * Отмечает гармоники, по которым астра связана хоть с одной другой астрой Матрицы,
+     * т.е. для которых хоть одна её пара {@link ResonanceBatch#hasHarmonicResonance(int)
+     * резонирует}. Нерассчитанные пары ленивой Матрицы пропускаются: паттерны, на которые
+     * они могли бы повлиять, ещё не искались.
+     * @param k        номер астры в {@link #allAstras}.
+     * @param harmonics набор, в котором отмечаются номера гармоник.
+     */
+    private void markHarmonics(int k, BitSet harmonics) {
+        int n = allAstras.size();
+        for (int x = 0; x < n; x++) {
+            if (x == k) continue;
+            int i = Math.min(k, x), j = Math.max(k, x);
+            if (pending != null && pending.get(ResonanceStore.pairIndex(i, j, n))) continue;
+            for (int h = 1; h <= profile.edgeHarmonic(); h++)
+                if (store.resonates(i, j, h))
+                    harmonics.set(h);
         }
-        return i != null ? i : -1;
     }
 
     /**
@@ -102,7 +673,7 @@ public class AstroMatrix {
      */
     public ResonanceBatch getResonanceFor(Astra a, Astra b) {
         if (a == b) throw new IllegalArgumentException("Астра не делает резонанса сама с собой");
-        int iA = astraIndex(a), iB = astraIndex(b);
+        int iA = slotOf(a), iB = slotOf(b);
         if (iA == -1 || iB == -1) throw new IllegalArgumentException("Астра %s не найдена"
                 .formatted(iA == -1 ?
                                 iB == -1 ?
@@ -110,8 +681,27 @@ public class AstroMatrix {
                                 "%s".formatted(a.getSymbolWithOwner()) :
                             "%s".formatted(b.getSymbolWithOwner())));
         return iA < iB ?
-                matrix[iA][iB] :
-                matrix[iB][iA];
+                pair(iA, iB) :
+                pair(iB, iA);
+    }
+
+    /**
+     * Выдаёт рассчитанный для пары астр резонанс по слотам астр.
+     * @param a слот первой астры.
+     * @param b слот второй астры.
+     * @return  объект резонанса, рассчитанный в Матрице для двух указанных астр.
+     * @throws IllegalArgumentException если слоты совпадают или выходят за пределы Матрицы.
+     */
+    public ResonanceBatch getResonanceFor(int a, int b) {
+        checkSlots(a, b);
+        return pair(Math.min(a, b), Math.max(a, b));
+    }
+
+    private void checkSlots(int a, int b) {
+        if (a == b) throw new IllegalArgumentException("Астра не делает резонанса сама с собой");
+        if (a < 0 || a >= allAstras.size() || b < 0 || b >= allAstras.size())
+            throw new IllegalArgumentException("Слот %d не найден"
+                    .formatted(a < 0 || a >= allAstras.size() ? a : b));
     }
 
     /**
@@ -128,6 +718,19 @@ public class AstroMatrix {
         return getResonanceFor(a,b).hasExactHarmonic(harmonic);
     }
 
+    /**
+     * Сообщает, что между астрами в указанных слотах присутствует
+     * номинальный резонанс по указанной гармонике, как {@link #inResonance(Astra, Astra, int)}.
+     * @param a        слот первой проверяемой астры.
+     * @param b        слот второй проверяемой астры.
+     * @param harmonic гармоника, явная связь по которой проверяется.
+     * @return  {@code true}, если между указанными астрами существует
+     * явный резонанс по указанной гармонике, в противном случае {@code false}.
+     */
+    public boolean inResonance(int a, int b, int harmonic) {
+        return getResonanceFor(a, b).hasExactHarmonic(harmonic);
+    }
+
     /**
      * Выдаёт список {@link ResonanceBatch Резонансов}, которые указанная астра
      * делает со всеми остальными астрами в Матрице (из одной или разных карт).
@@ -135,21 +738,24 @@ public class AstroMatrix {
      * @return  список резонансов указанной астры с каждой из остальных астр Матрицы.
      */
     public List<ResonanceBatch> resonancesFor(Astra a, boolean[] actualAstrasMask) {
+        return resonancesFor(slotOf(a), actualAstrasMask);
+    }
+
+    /**
+     * Выдаёт список {@link ResonanceBatch Резонансов}, которые астра в указанном слоте
+     * делает со всеми остальными астрами в Матрице: сначала столбец треугольника
+     * (пары с меньшими слотами), затем ряд (пары с бóльшими).
+     * @param slot             слот астры, резонансы которой интересуют.
+     * @param actualAstrasMask маска, какие астры следует рассматривать.
+     * @return  список резонансов астры с каждой из остальных рассматриваемых астр Матрицы;
+     * пустой, если сама астра не рассматривается.
+     */
+    public List<ResonanceBatch> resonancesFor(int slot, boolean[] actualAstrasMask) {
         List<ResonanceBatch> list = new ArrayList<>();
-        int index = astraIndex(a);
-        int i = 0, j = index;
-        boolean turning = false;
-        while (i + j < allAstras.size() + index - 1) {
-            if (turning) j++;
-            if (i == j) {
-                turning = true;
-                continue;
-            }
-            if (actualAstrasMask[i] && actualAstrasMask[j]) {
-                list.add(matrix[i][j]);
-            }
-            if (!turning) i++;
-        }
+        if (!actualAstrasMask[slot]) return list;
+        for (int x = 0; x < allAstras.size(); x++)
+            if (x != slot && actualAstrasMask[x])
+                list.add(pair(Math.min(slot, x), Math.max(slot, x)));
         return list;
     }
 
@@ -157,13 +763,43 @@ public class AstroMatrix {
      * Выплёскивает поток существующих в АстроМатрице резонансов,
      * проход матрицы осуществляем "косынкой": [0][1]→[0][2]→[0][3]→[1][2]→[1][3]→[2][3].
      * Т.е. по резонансу для всех возможных пар между астрами анализируемой карты или карт.
+     * При {@link MatrixStorage#SPARSE разреженном} хранении пары без аспектов пропускаются.
      * @return  поток объектов-резонансов, начиная с первой планеты первой карты.
      */
     public Stream<ResonanceBatch> stream() {
-        return IntStream.range(0, allAstras.size() - 1)
-                .mapToObj(i -> Arrays.asList(matrix[i])
-                        .subList(i + 1, allAstras.size()))
-                .flatMap(Collection::stream);
+        return IntStream.iterate(nextPair(0), p -> p >= 0, p -> nextPair(p + 1))
+                .mapToObj(this::pairAt);
+    }
+
+    /**
+     * Находит ближайшую пару для обхода {@link #stream()}, начиная с указанной.
+     * Пропускает пары, которых нет в разреженном хранилище; нерассчитанные пары
+     * ленивой Матрицы, встреченные по пути, рассчитываются, чтобы узнать, пусты ли они.
+     * @param from номер пары в треугольной раскладке, с которой начинается поиск.
+     * @return номер найденной пары, или -1, если пар больше нет.
+     */
+    private int nextPair(int from) {
+        while (true) {
+            int stored = store.nextStored(from);
+            if (pending == null) return stored;
+            int waiting;
+            synchronized (pending) {
+                waiting = pending.nextSetBit(from);
+            }
+            if (waiting == -1 || stored != -1 && stored < waiting) return stored;
+            pairAt(waiting);
+            from = waiting;
+        }
+    }
+
+    /**
+     * @param p номер пары в треугольной раскладке.
+     * @return резонанс этой пары.
+     */
+    private ResonanceBatch pairAt(int p) {
+        int n = allAstras.size();
+        int i = ResonanceStore.rowOf(p, n);
+        return pair(i, p - ResonanceStore.pairIndex(i, i + 1, n) + i + 1);
     }
 
     /**
@@ -175,18 +811,88 @@ public class AstroMatrix {
         return stream().collect(Collectors.toCollection(ArrayList::new));
     }
 
+    /**
+     * Выдаёт резонансы между астрами одной карты. Поскольку астры карты занимают
+     * в Матрице сплошной блок слотов, возвращается представление этого блока
+     * треугольника, а не результат фильтрации всех пар: стоимость равна
+     * количеству выданных пар. Порядок — как в {@link #stream()}.
+     * @param chart карта Матрицы.
+     * @return неизменяемый список резонансов всех пар астр карты;
+     * пустой, если карта не входит в Матрицу.
+     */
     public List<ResonanceBatch> getResonancesFor(Chart chart) {
-        return stream()
-                .filter(ResonanceBatch::isNonSynastric)
-                .filter(r -> r.getHeavens().contains(chart))
-                .toList();
+        int c = chartNumber(chart);
+        if (c == -1) return List.of();
+        return new TriangleBlock(chartBlocks[c], chartBlocks[c + 1] - chartBlocks[c]);
     }
 
+    /**
+     * Выдаёт резонансы между астрами двух разных карт, как представление
+     * прямоугольного блока Матрицы на пересечении блоков этих карт.
+     * Порядок — как в {@link #stream()}: по рядам астр карты, стоящей в Матрице раньше.
+     * @param chart1 одна карта Матрицы.
+     * @param chart2 другая карта Матрицы.
+     * @return неизменяемый список резонансов каждой астры одной карты с каждой
+     * астрой другой; пустой, если карты совпадают или какая-то не входит в Матрицу.
+     */
     public List<ResonanceBatch> getResonancesFor(Chart chart1, Chart chart2) {
-        return stream()
-                .filter(ResonanceBatch::isSynastric)
-                .filter(r -> r.getHeavens().containsAll(Set.of(chart1, chart2)))
-                .toList();
+        int c1 = chartNumber(chart1), c2 = chartNumber(chart2);
+        if (c1 == -1 || c2 == -1 || c1 == c2) return List.of();
+        int rows = Math.min(c1, c2), columns = Math.max(c1, c2);
+        return new CrossBlock(chartBlocks[rows], chartBlocks[rows + 1] - chartBlocks[rows],
+                chartBlocks[columns], chartBlocks[columns + 1] - chartBlocks[columns]);
+    }
+
+    /**
+     * Представление треугольника пар внутри блока из {@code count} астр,
+     * начинающегося со слота {@code from}, в порядке обхода "косынкой".
+     */
+    private class TriangleBlock extends AbstractList<ResonanceBatch> implements RandomAccess {
+        private final int from, count;
+
+        TriangleBlock(int from, int count) {
+            this.from = from;
+            this.count = count;
+        }
+
+        @Override
+        public ResonanceBatch get(int k) {
+            Objects.checkIndex(k, size());
+            int i = ResonanceStore.rowOf(k, count);
+            int j = k - ResonanceStore.pairIndex(i, i + 1, count) + i + 1;
+            return pair(from + i, from + j);
+        }
+
+        @Override
+        public int size() {
+            return ResonanceStore.pairCount(count);
+        }
+    }
+
+    /**
+     * Представление прямоугольника пар между блоком рядов и лежащим
+     * дальше в {@link #allAstras} блоком столбцов, по рядам.
+     */
+    private class CrossBlock extends AbstractList<ResonanceBatch> implements RandomAccess {
+        private final int rowFrom, rows, columnFrom, columns;
+
+        CrossBlock(int rowFrom, int rows, int columnFrom, int columns) {
+            this.rowFrom = rowFrom;
+            this.rows = rows;
+            this.columnFrom = columnFrom;
+            this.columns = columns;
+        }
+
+        @Override
+        public ResonanceBatch get(int k) {
+            Objects.checkIndex(k, size());
+            return pair(rowFrom + k / columns, columnFrom + k % columns);
+        }
+
+        @Override
+        public int size() {
+            return rows * columns;
+        }
     }
 
     /**
@@ -198,18 +904,64 @@ public class AstroMatrix {
      * @return список паттернов из астр этой карты или карт, резонирующих
      * по указанной гармонике, сортированный по средней силе.
      * Если ни одного паттерна не обнаруживается, то пустой список.
+     * Найденные паттерны запоминаются до изменения астр Матрицы.
      */
     public List<Pattern> findPatterns(int harmonic, List<Chart> activeCharts) {
+        return patternCache
+                .computeIfAbsent(harmonic, h -> new ConcurrentHashMap<>())
+                .computeIfAbsent(List.copyOf(activeCharts), charts -> searchPatterns(harmonic, charts));
+    }
+
+    /**
+     * Выполняет поиск паттернов для {@link #findPatterns(int, List)} в обход кэша.
+     * Все связанные в {@link #getHarmonicGraph(int) графе гармоники} пары рассматриваемых астр сливаются в
+     * {@link DisjointSet систему непересекающихся множеств}, после чего
+     * из каждой компоненты связности один раз строится паттерн.
+     * @param harmonic     гармоника, по которой выделяются паттерны.
+     * @param activeCharts из каких карт следует рассматривать астры.
+     * @return список паттернов, сортированный по средней силе.
+     */
+    private List<Pattern> searchPatterns(int harmonic, List<Chart> activeCharts) {
         boolean[] acceptable = getAcceptanceMask(activeCharts);
-        boolean[] analyzed = new boolean[allAstras.size()];
-        return range(0, allAstras.size())
-                .filter(i -> acceptable[i] && !analyzed[i])
-                .mapToObj(i -> gatherResonants(i, harmonic, analyzed, acceptable))
-                .filter(Pattern::isValid)
+        HarmonicGraph graph = getHarmonicGraph(harmonic);
+        int n = allAstras.size();
+        DisjointSet components = new DisjointSet(n);
+        for (int v = 0; v < n; v++)
+            if (acceptable[v])
+                for (int e = graph.start(v); e < graph.end(v); e++)
+                    if (graph.neighbour(e) > v && acceptable[graph.neighbour(e)])
+                        components.union(v, graph.neighbour(e));
+
+        // слоты каждой компоненты в порядке номеров, компоненты — в порядке первой астры
+        Map<Integer, List<Integer>> members = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++)
+            if (acceptable[i] && components.sizeOf(i) > 1)
+                members.computeIfAbsent(components.find(i), root -> new ArrayList<>())
+                        .add(i);
+
+        return members.values().stream()
+                .filter(slots -> hasNominalResonance(slots, harmonic))
+                .map(slots -> new Pattern(harmonic, slots.stream().map(allAstras::get).toList()))
                 .sorted(Comparator.comparingDouble(Pattern::getAverageStrength).reversed())
                 .toList();
     }
 
+    /**
+     * Предикат, удостоверяющий, что в группе астр наличествует
+     * номинальный аспект в явном виде для хотя бы одной пары.
+     * @param slots    слоты астр группы.
+     * @param harmonic гармоника, по которой выделена группа.
+     * @return {@code true}, если хотя бы в одной паре номинальный резонанс
+     * наличествует; {@code false}, если ни в одной.
+     */
+    private boolean hasNominalResonance(List<Integer> slots, int harmonic) {
+        for (int i = 0; i < slots.size() - 1; i++)
+            for (int j = i + 1; j < slots.size(); j++)
+                if (inResonance(slots.get(i), slots.get(j), harmonic))
+                    return true;
+        return false;
+    }
+
     /**
      * Создаёт битовую маску на список всех астр, отмечающую,
      * какие из них должны рассматриваться в некотором анализе.
@@ -225,36 +977,6 @@ public class AstroMatrix {
         return mask;
     }
 
-    /**
-     * Выдаёт паттерн, состоящий из астр данной карты, связанных с указанной астрой
-     * по указанной гармонике напрямую или посредством других астр.
-     * Исходная астра помещается сразу в паттерн, её номер отмечается как
-     * уже проверенный во вспомогательном массиве; затем функция рекурсивно
-     * запускается для каждой из ещё не проверенных астр, имеющих указанный
-     * резонанс с исходной, результат каждого вызова добавляется к паттерну.
-     *
-     * @param astraIndex индекс исходной астры в списке астр этой Карты.
-     * @param harmonic   номер гармоники, по которому надо проверить узор.
-     * @param acceptable    битовая маска, выбирающая те астры, по которым
-     *                      надо проводить анализ.
-     * @param analyzed   битовая маска, отмечающая, какие астры
-     *                   из списка астр этой Карты уже проверены на этот резонанс.
-     * @return паттерн, содержащий исходную астру и все связанные с ней
-     * по указанной гармонике астры из списка астр этой карты; паттерн,
-     * содержащий одну исходную астру, если резонансов по этой гармонике нет.
-     */
-    private Pattern gatherResonants(int astraIndex, int harmonic, boolean[] analyzed, boolean[] acceptable) {
-        Astra startingAstra = allAstras.get(astraIndex);
-        analyzed[astraIndex] = true;
-        Pattern currentPattern = new Pattern(harmonic, this);
-        currentPattern.addAstra(startingAstra);
-        getConnectedAstras(startingAstra, harmonic, acceptable).stream()
-                .filter(a -> !analyzed[allAstras.indexOf(a)])
-                .map(a -> gatherResonants(allAstras.indexOf(a), harmonic, analyzed, acceptable))
-                .forEach(currentPattern::addAllAstras);
-        return currentPattern;
-    }
-
     /**
      * Выдаёт список астр, находящихся в резонансе с данной по указанной гармонике.
      * Рассматриваются все астры из всех карт, по которым построена Матрица:
@@ -265,13 +987,112 @@ public class AstroMatrix {
      * @param acceptable    маска, какие астры следует рассматривать.
      * @return список астр, находящих в резонансе с данной по указанной гармонике.
      * Орбис для аспектов между астрами из разных карт учитывается соответственно
-     * глобально определённым правилам.
+     * глобально определённым правилам. Соседи берутся из
+     * {@link #getHarmonicGraph(int) графа гармоники}, без создания объектов резонансов.
      */
     public List<Astra> getConnectedAstras(Astra astra, int harmonic, boolean[] acceptable) {
-        return resonancesFor(astra, acceptable)
-                .stream().filter(r -> r.hasHarmonicResonance(harmonic))
-                .map(r -> r.getCounterpart(astra))
-                .collect(Collectors.toList());
+        List<Astra> connected = new ArrayList<>();
+        int k = slotOf(astra);
+        if (!acceptable[k]) return connected;
+        HarmonicGraph graph = getHarmonicGraph(harmonic);
+        for (int e = graph.start(k); e < graph.end(k); e++)
+            if (acceptable[graph.neighbour(e)])
+                connected.add(allAstras.get(graph.neighbour(e)));
+        return connected;
+    }
+
+    /**
+     * Выдаёт граф связей между всеми астрами Матрицы по указанной гармонике.
+     * Граф строится при первом запросе по гармоническим маскам пар
+     * и далее хранится, пока не изменятся астры, связанные по этой гармонике.
+     * @param harmonic гармоника, по которой строится граф.
+     * @return {@link HarmonicGraph граф} в сжатом построчном виде, вершины которого —
+     * номера астр в {@link #allAstras}.
+     */
+    public HarmonicGraph getHarmonicGraph(int harmonic) {
+        return graphCache.computeIfAbsent(harmonic, this::buildHarmonicGraph);
+    }
+
+    /**
+     * Строит за один проход по треугольнику пар графы всех гармоник диапазона
+     * {@link #request запроса} до крайней, которых ещё нет в кэше. Маска пары уже отмечает каждую гармонику, кратную числу
+     * какого-либо её аспекта в пределах его глубины, т.е. связи гармоники выводятся
+     * из аспектов её делителей при записи пары. Поэтому маска каждой пары читается
+     * однажды, а пара раскладывается по графам гармоник перебором установленных битов —
+     * вместо того чтобы для каждой гармоники заново проверять все пары.
+     * Получаемые графы совпадают с построенными {@link #buildHarmonicGraph(int)}.
+     */
+    private void buildHarmonicGraphs() {
+        BitSet missing = new BitSet(edgeHarmonic + 1);
+        for (int h = request.fromHarmonic(); h <= edgeHarmonic; h++)
+            if (!graphCache.containsKey(h)) missing.set(h);
+        if (missing.isEmpty()) return;
+
+        int n = allAstras.size(), words = ResonanceStore.maskWords(profile.edgeHarmonic());
+        long[] wanted = Arrays.copyOf(missing.toLongArray(), words);
+        long[] mask = new long[words];
+        // для каждой гармоники: связанные пары подряд, по два номера астр на пару
+        int[][] edges = new int[edgeHarmonic + 1][];
+        int[] counts = new int[edgeHarmonic + 1];
+        for (int p = nextPair(0); p >= 0; p = nextPair(p + 1)) {
+            int i = ResonanceStore.rowOf(p, n), j = p - ResonanceStore.pairIndex(i, i + 1, n) + i + 1;
+            store.copyMask(i, j, mask, 0);
+            for (int w = 0; w < words; w++)
+                for (long bits = mask[w] & wanted[w]; bits != 0; bits &= bits - 1) {
+                    int h = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    if (edges[h] == null)
+                        edges[h] = new int[16];
+                    else if (counts[h] == edges[h].length)
+                        edges[h] = Arrays.copyOf(edges[h], counts[h] * 2);
+                    edges[h][counts[h]++] = i;
+                    edges[h][counts[h]++] = j;
+                }
+        }
+
+        missing.stream().forEach(h -> {
+            int[] offsets = new int[n + 1];
+            for (int e = 0; e < counts[h]; e++)
+                offsets[edges[h][e] + 1]++;
+            for (int v = 0; v < n; v++)
+                offsets[v + 1] += offsets[v];
+            int[] neighbours = new int[counts[h]];
+            int[] cursor = Arrays.copyOf(offsets, n);
+            for (int e = 0; e < counts[h]; e += 2) {
+                neighbours[cursor[edges[h][e]]++] = edges[h][e + 1];
+                neighbours[cursor[edges[h][e + 1]]++] = edges[h][e];
+            }
+            graphCache.putIfAbsent(h, new HarmonicGraph(h, offsets, neighbours));
+        });
+    }
+
+    /**
+     * Строит граф гармоники в два прохода по треугольнику пар:
+     * сначала подсчитываются степени вершин, затем раскладываются соседи.
+     * Соседи каждой вершины получаются упорядоченными по возрастанию.
+     * @param harmonic гармоника, по которой строится граф.
+     * @return построенный граф.
+     */
+    private HarmonicGraph buildHarmonicGraph(int harmonic) {
+        int n = allAstras.size();
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n - 1; i++)
+            for (int j = i + 1; j < n; j++)
+                if (resonates(i, j, harmonic)) {
+                    offsets[i + 1]++;
+                    offsets[j + 1]++;
+                }
+        for (int v = 0; v < n; v++)
+            offsets[v + 1] += offsets[v];
+
+        int[] neighbours = new int[offsets[n]];
+        int[] cursor = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < n - 1; i++)
+            for (int j = i + 1; j < n; j++)
+                if (resonates(i, j, harmonic)) {
+                    neighbours[cursor[i]++] = j;
+                    neighbours[cursor[j]++] = i;
+                }
+        return new HarmonicGraph(harmonic, offsets, neighbours);
     }
 
     /**
@@ -281,6 +1102,7 @@ public class AstroMatrix {
      * из одной или двух карт, если нет, то все комбинации вплоть до
      * варианта, включающего все карты сразу.
      * Сокращённый список будет иметь длину {@code N*(N+1)/2}, полный — {@code 2^N-1}.
+     * Сочетания, в которые входит карта, не выбранная {@link #request запросом анализа}, пропускаются.
      * @param forAspects ограничивать ли список только сочетанием одной-двух карт,
      *                   как требуется для передачи аспектов.
      * @return если матрица строится для одиночной карты, выдаёт список
@@ -303,7 +1125,8 @@ public class AstroMatrix {
                 cypher /= 2;
                 n++;
             }
-            combinations.add(nextCombination);
+            if (request.admits(nextCombination))
+                combinations.add(nextCombination);
         }
         combinations.sort(Comparator.comparingInt(List::size));
         return combinations;
@@ -325,14 +1148,33 @@ public class AstroMatrix {
     }
 
 
+    /**
+     * Выдаёт паттерны по всем гармоникам от нижней гармоники {@link #request запроса}
+     * до крайней для указанного сочетания карт.
+     * Графы всех гармоник, ещё не построенные, строятся заранее за один проход
+     * по парам ({@link #buildHarmonicGraphs()}), а не по проходу на гармонику.
+     * @param charts сочетание карт, паттерны которого нужны.
+     * @return анализ паттернов этого сочетания по гармоникам.
+     */
     public PatternAnalysis getPatternAnalysis(List<Chart> charts) {
         PatternAnalysis anal = new PatternAnalysis();
+        buildHarmonicGraphs();
 
-        IntStream.rangeClosed(1, Settings.getEdgeHarmonic())
+        IntStream.rangeClosed(request.fromHarmonic(), edgeHarmonic)
                 .forEach(i -> findPatterns(i, charts).stream()
                         .filter(pat -> pat.ofHeavenSet(charts))
                         .forEach(anal::addPattern));
 
         return anal;
     }
+
+    /**
+     * Освобождает память хранилища резонансов, если оно держит её вне кучи
+     * ({@link MatrixStorage#OFF_HEAP}). После закрытия Матрица непригодна;
+     * для хранилищ в куче закрытие ничего не делает.
+     */
+    @Override
+    public void close() {
+        store.close();
+    }
 }
@@ -0,0 +1,65 @@
+package ru.swetophor.astrowidjaspring.model;
+
+/**
+ * Система непересекающихся множеств над номерами астр {@code 0..N-1}.
+ * Используется для выделения компонент связности, т.е. паттернов:
+ * астры, связанные резонансом напрямую или через другие астры,
+ * оказываются в одном множестве. Объединение по размеру со сжатием путей
+ * даёт почти постоянное время на операцию и обходится без рекурсии.
+ */
+final class DisjointSet {
+    private final int[] parent;
+    private final int[] size;
+
+    /**
+     * Создаёт систему, где каждый элемент составляет отдельное множество.
+     * @param n количество элементов.
+     */
+    DisjointSet(int n) {
+        parent = new int[n];
+        size = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+    /**
+     * @param x номер элемента.
+     * @return представитель множества, в котором находится элемент.
+     */
+    int find(int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * Объединяет множества двух элементов.
+     * @param a номер одного элемента.
+     * @param b номер другого элемента.
+     * @return {@code true}, если элементы были в разных множествах и те объединились.
+     */
+    boolean union(int a, int b) {
+        int rootA = find(a), rootB = find(b);
+        if (rootA == rootB) return false;
+        if (size[rootA] < size[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        return true;
+    }
+
+    /**
+     * @param x номер элемента.
+     * @return сколько элементов в множестве, где находится этот элемент.
+     */
+    int sizeOf(int x) {
+        return size[find(x)];
+    }
+}
@@ -0,0 +1,84 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import lombok.Getter;
+
+/**
+ * Граф связей между астрами {@link AstroMatrix Матрицы} по одной гармонике
+ * в сжатом построчном виде (CSR). Вершины — номера астр в объединённом списке
+ * Матрицы, ребро соединяет астры, которые в этой гармонике предстают соединением.
+ * Соседи астры {@code v} лежат в {@link #neighbours} с позиции {@code offsets[v]}
+ * до позиции {@code offsets[v + 1]} (не включая) по возрастанию номеров,
+ * так что обход соседей не требует создания объектов:
+ * <pre>{@code
+ * for (int e = graph.start(v); e < graph.end(v); e++)
+ *     visit(graph.neighbour(e));
+ * }</pre>
+ */
+public final class HarmonicGraph {
+    /**
+     * Гармоника, по которой построен граф.
+     */
+    @Getter
+    private final int harmonic;
+    /**
+     * Начало списка соседей каждой вершины; последний элемент равен количеству
+     * записей в {@link #neighbours}, т.е. удвоенному количеству рёбер.
+     */
+    private final int[] offsets;
+    /**
+     * Списки соседей всех вершин, уложенные подряд.
+     */
+    private final int[] neighbours;
+
+    HarmonicGraph(int harmonic, int[] offsets, int[] neighbours) {
+        this.harmonic = harmonic;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+    }
+
+    /**
+     * @return количество вершин, т.е. астр Матрицы.
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return количество рёбер, т.е. связанных по гармонике пар астр.
+     */
+    public int edgeCount() {
+        return neighbours.length / 2;
+    }
+
+    /**
+     * @param v номер вершины.
+     * @return позиция первого соседа вершины.
+     */
+    public int start(int v) {
+        return offsets[v];
+    }
+
+    /**
+     * @param v номер вершины.
+     * @return позиция, следующая за последним соседом вершины.
+     */
+    public int end(int v) {
+        return offsets[v + 1];
+    }
+
+    /**
+     * @param position позиция в списке соседей.
+     * @return номер астры, записанной в этой позиции.
+     */
+    public int neighbour(int position) {
+        return neighbours[position];
+    }
+
+    /**
+     * @param v номер вершины.
+     * @return со сколькими астрами связана астра по гармонике графа.
+     */
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+}
@@ -3,9 +3,7 @@ package ru.swetophor.astrowidjaspring.model;
 import lombok.Getter;
 import ru.swetophor.astrowidjaspring.utils.CelestialMechanics;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -96,34 +94,17 @@ public final class Harmonics extends Number implements Comparable<Harmonics> {
     /**
      * Выдаёт список множителей данного числа (не считая единицы, естественно).
      * Например, для 10 → {2, 5}, для 11 → {11}, для 12 → {2, 2, 3}.
+     * Разложение числа в пределах общего {@link PrimeSieve решета} берётся из него
+     * и запоминается, так что повторный вызов для того же числа возвращает тот же список;
+     * числа выше потолка решета разлагаются пробным делением.
      * @param number неотрицательное число, разлагаемое на множители.
-     * @return  список неравных единице множителей, дающих исходное число,
-     * от большего к меньшему. Для ноля {0} (неизменяемый список), для единицы {1} (неизменяемый список).
+     * @return  неизменяемый список неравных единице множителей, дающих исходное число,
+     * от большего к меньшему. Для ноля {0}, для единицы {1}.
      * @throws IllegalArgumentException при отрицательном аргументе.
      */
     public static List<Integer> multipliersExplicate(int number) {
         if (number < 0) throw new IllegalArgumentException("функция работает с положительными числами");
-        if (number == 0) return List.of(0);
-        if (number == 1) return List.of(1);
-        List<Integer> multipliers = new ArrayList<>();
-
-        int divider = 2;
-        while(number > 1) {
-            if (divider > number / divider) {
-                multipliers.add(number);
-                break;
-            }
-            if (number % divider == 0) {
-                multipliers.add(divider);
-                number /= divider;
-            } else {
-                divider++;
-            }
-        }
-
-        multipliers.sort(Comparator.reverseOrder());
-
-        return multipliers;
+        return PrimeSieve.factorize(number);
     }
 
     /**
@@ -131,23 +112,36 @@ public final class Harmonics extends Number implements Comparable<Harmonics> {
      * @param resonance какой гармоники анализируется дуга.
      * @param arc   анализируемая дуга.
      * @param orb   первичный орбис, используемый при расчёте аспектов.
-     * @return  множитель аспекта заданной гармоники для заданной дуги.
+     * @return  множитель аспекта заданной гармоники для заданной дуги: наименьший
+     * множитель меньше половины гармоники, при котором дуга попадает в орбис аспекта;
+     * если такого нет, половина гармоники (но не меньше 1).
      */
     public static int findMultiplier(int resonance, double arc, double orb) {
         double single = CelestialMechanics.CIRCLE / resonance;
-        int multiplier = 1;
         double orbHere = orb / resonance;
-        while (multiplier < resonance / 2)
-            if (abs(single * multiplier - arc) < orbHere) break;
-            else multiplier++;
-        return multiplier;
+        int half = resonance / 2;
+        if (orb >= CelestialMechanics.HALF_CIRCLE) {
+            int multiplier = 1;
+            while (multiplier < half)
+                if (abs(single * multiplier - arc) < orbHere) break;
+                else multiplier++;
+            return multiplier;
+        }
+        // при орбисе меньше полукруга в орбис может попасть лишь ближайший к дуге множитель,
+        // соседние проверяются только на случай погрешности округления
+        long nearest = Math.round(arc / single);
+        for (long multiplier = Math.max(1, nearest - 1); multiplier <= nearest + 1 && multiplier < half; multiplier++)
+            if (abs(single * multiplier - arc) < orbHere) return (int) multiplier;
+        return Math.max(half, 1);
     }
 
 
 
     public static int multiSum(int number) {
-        return multipliersExplicate(number).stream()
-                .mapToInt(Integer::intValue).sum();
+        int sum = 0;
+        for (int multiplier : multipliersExplicate(number))
+            sum += multiplier;
+        return sum;
     }
 
     /**
@@ -169,10 +163,11 @@ public final class Harmonics extends Number implements Comparable<Harmonics> {
      * @param numeric   число резонанса, на кратность с которым проверяется.
      * @return  {@code true}, если один из простых множителей первого аргумента совпадает
      * со вторым аргументом.
+     * @throws IllegalArgumentException при отрицательной проверяемой гармонике.
      */
     public static boolean isMultiplied(int harmonic, int numeric) {
-        return multipliersExplicate(harmonic)
-                .contains(numeric);
+        if (harmonic < 0) throw new IllegalArgumentException("функция работает с положительными числами");
+        return PrimeSieve.hasMultiplier(harmonic, numeric);
     }
 
     /**
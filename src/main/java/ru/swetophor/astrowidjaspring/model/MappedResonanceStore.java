@@ -0,0 +1,399 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import ru.swetophor.astrowidjaspring.config.Environments;
+import ru.swetophor.astrowidjaspring.config.Settings;
+import ru.swetophor.astrowidjaspring.model.astro.AspectList;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static ru.swetophor.astrowidjaspring.utils.Decorator.console;
+
+/**
+ * Хранилище резонансов, сохранённое в файл и открытое только для чтения
+ * через {@link FileChannel#map отображение файла в память}, так что повторное
+ * открытие большой Матрицы не требует ни расчёта, ни разбора файла.
+ * <p>
+ * Файлы лежат в папке {@link #MATRICES_DIR} внутри {@link Environments#appDir папки программы};
+ * имя файла — хеш ключа: названий карт, названий и координат астр в порядке Матрицы
+ * и {@link ResonanceProfile профиля} (крайней гармоники, первичного орбиса, т.е. делителя орбиса,
+ * и обоих флагов). Изменение карт или настроек даёт другой ключ, так что устаревший файл
+ * просто не находится. Ключ записан и в заголовок файла и сверяется при открытии.
+ * Чтобы устаревшие файлы не копились, после каждого сохранения папка урезается
+ * до {@link Settings#getMatrixCacheLimit() предела}: удаляются файлы, дольше всех
+ * не открывавшиеся (открытие отмечается временем изменения файла).
+ * <p>
+ * Раскладка файла (байты чисел от младшего к старшему): заголовок {@link #HEADER_BYTES} байт — метка,
+ * версия, количество астр, крайняя гармоника, размер пула аспектов и ключ; затем записи
+ * пар по треугольной раскладке, как в {@link PackedResonanceStore}: дуга, орбис, начало
+ * и длина участка в пуле, гармоническая маска; затем пул: код и зазор каждого аспекта.
+ * <p>
+ * Обход пар следует способу хранения Матрицы: для {@link MatrixStorage#SPARSE разреженного}
+ * пустые пары пропускаются. При первой записи (пересчёте астры) хранилище переносит
+ * все пары в обычное хранилище этого способа и дальше работает через него.
+ */
+final class MappedResonanceStore implements ResonanceStore {
+    /**
+     * Папка для сохранённых Матриц внутри папки программы.
+     */
+    static final String MATRICES_DIR = "matrices";
+    private static final int MAGIC = 0x41574d58;   // "AWMX"
+    private static final int VERSION = 1;
+    private static final int KEY_BYTES = 32;
+    private static final int HEADER_BYTES = 20 + KEY_BYTES;
+    private static final int ARC = 0, ORB = 8, START = 16, COUNT = 20, MASK = 24;
+    private static final int ASPECT_BYTES = 16;
+    /**
+     * Размер буферов, через которые пары пишутся в файл при сохранении.
+     */
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final List<Astra> astras;
+    private final ResonanceProfile profile;
+    private final MatrixStorage storage;
+    private final int pairCount, pairBytes;
+    private final MappedByteBuffer data;
+    /**
+     * Начало пула аспектов в файле.
+     */
+    private final int poolOffset;
+    /**
+     * Обычное хранилище, в которое перенесены пары при первой записи; до того {@code null}.
+     */
+    private volatile ResonanceStore writable;
+
+    private MappedResonanceStore(List<Astra> astras, ResonanceProfile profile, MatrixStorage storage,
+                                 MappedByteBuffer data) {
+        this.astras = astras;
+        this.profile = profile;
+        this.storage = storage;
+        this.data = data;
+        pairCount = ResonanceStore.pairCount(astras.size());
+        pairBytes = MASK + ResonanceStore.maskWords(profile.edgeHarmonic()) * 8;
+        poolOffset = HEADER_BYTES + pairCount * pairBytes;
+    }
+
+    /**
+     * Определяет файл, в котором хранится (или будет храниться) Матрица с указанными
+     * астрами и профилем.
+     * @param astras  объединённый список астр Матрицы.
+     * @param profile профиль, с которым рассчитываются резонансы.
+     * @return путь к файлу, или {@code null}, если папка программы не задана.
+     */
+    static Path fileFor(List<Astra> astras, ResonanceProfile profile) {
+        if (Environments.appDir == null) return null;
+        return Environments.appDir.resolve(MATRICES_DIR)
+                .resolve(HexFormat.of().formatHex(keyOf(astras, profile)) + ".matrix");
+    }
+
+    /**
+     * Открывает сохранённое хранилище, если файл есть и соответствует астрам и профилю.
+     * @param file    файл, выданный {@link #fileFor(List, ResonanceProfile)}.
+     * @param astras  объединённый список астр Матрицы.
+     * @param profile профиль, с которым рассчитываются резонансы.
+     * @param storage способ хранения, в который пары переносятся при первой записи.
+     * @return открытое хранилище, или {@code null}, если файла нет или он не подходит.
+     */
+    static MappedResonanceStore open(Path file, List<Astra> astras, ResonanceProfile profile,
+                                     MatrixStorage storage) {
+        if (!Files.isRegularFile(file)) return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) return null;
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            byte[] key = new byte[KEY_BYTES];
+            data.get(20, key);
+            if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION
+                    || data.getInt(8) != astras.size() || data.getInt(12) != profile.edgeHarmonic()
+                    || !MessageDigest.isEqual(key, keyOf(astras, profile)))
+                return null;
+            MappedResonanceStore store = new MappedResonanceStore(astras, profile, storage, data);
+            if ((long) store.poolOffset + (long) data.getInt(16) * ASPECT_BYTES != channel.size())
+                return null;
+            markUsed(file);
+            return store;
+        } catch (IOException e) {
+            console("Не удалось открыть сохранённую Матрицу '%s': %s%n".formatted(file, e.getLocalizedMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Сохраняет рассчитанное хранилище в файл. Файл пишется рядом под временным
+     * именем и затем переименовывается, так что недописанный файл не будет открыт.
+     * Пары читаются из хранилища по одной и сразу пишутся в файл через два небольших
+     * буфера — записей пар и пула, каждый на своё место в файле; размер пула
+     * становится известен в конце и дописывается в заголовок последним.
+     * Неудача сохранения не мешает работе: о ней только сообщается.
+     * @param file    файл, выданный {@link #fileFor(List, ResonanceProfile)}.
+     * @param store   хранилище со всеми рассчитанными парами.
+     * @param astras  объединённый список астр Матрицы.
+     * @param profile профиль, с которым рассчитаны резонансы.
+     */
+    static void save(Path file, ResonanceStore store, List<Astra> astras, ResonanceProfile profile) {
+        int n = astras.size();
+        int edgeHarmonic = profile.edgeHarmonic(), words = ResonanceStore.maskWords(edgeHarmonic);
+        int pairBytes = MASK + words * 8;
+        long poolOffset = HEADER_BYTES + (long) ResonanceStore.pairCount(n) * pairBytes;
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer records = ByteBuffer.allocate(Math.max(BUFFER_BYTES, pairBytes)).order(ByteOrder.LITTLE_ENDIAN);
+                ByteBuffer pool = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                long recordsAt = HEADER_BYTES, poolAt = poolOffset;
+                long[] mask = new long[words];
+                long poolSize = 0;
+                for (int i = 0; i < n - 1; i++)
+                    for (int j = i + 1; j < n; j++) {
+                        ResonanceBatch batch = store.read(i, j);
+                        AspectList aspects = batch.getAspects();
+                        if (poolOffset + (poolSize + aspects.size()) * ASPECT_BYTES > Integer.MAX_VALUE) {
+                            console("Матрица слишком велика для сохранения (больше %d байт)%n"
+                                    .formatted(Integer.MAX_VALUE));
+                            channel.close();
+                            Files.deleteIfExists(temporary);
+                            return;
+                        }
+                        if (records.remaining() < pairBytes) recordsAt = flush(channel, records, recordsAt);
+                        records.putDouble(batch.getArc()).putDouble(batch.getOrb())
+                                .putInt((int) poolSize).putInt(aspects.size());
+                        store.copyMask(i, j, mask, 0);
+                        for (long word : mask) records.putLong(word);
+                        for (int a = 0; a < aspects.size(); a++) {
+                            if (pool.remaining() < ASPECT_BYTES) poolAt = flush(channel, pool, poolAt);
+                            pool.putLong(aspects.code(a)).putDouble(aspects.clearance(a));
+                        }
+                        poolSize += aspects.size();
+                    }
+                flush(channel, records, recordsAt);
+                flush(channel, pool, poolAt);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(edgeHarmonic).putInt((int) poolSize)
+                        .put(keyOf(astras, profile));
+                flush(channel, header, 0);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            console("Не удалось сохранить Матрицу в '%s': %s%n".formatted(file, e.getLocalizedMessage()));
+            return;
+        }
+        prune(file, Settings.getMatrixCacheLimit() * (1L << 20));
+    }
+
+    /**
+     * Урезает папку сохранённых Матриц до указанного объёма: файлы перебираются
+     * от недавно открытых к давно не открывавшимся, и те, что уже не умещаются
+     * в предел, удаляются. Только что сохранённый файл не удаляется никогда.
+     * Файл, который не удалось удалить (например, открытый), пропускается.
+     * @param kept  только что сохранённый файл.
+     * @param limit предельный объём папки в байтах.
+     */
+    static void prune(Path kept, long limit) {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(kept.getParent())) {
+            files = new ArrayList<>(listing
+                    .filter(f -> f.getFileName().toString().endsWith(".matrix"))
+                    .toList());
+        } catch (IOException e) {
+            return;
+        }
+        files.sort(Comparator.comparing(MappedResonanceStore::lastUsed).reversed());
+        long total = 0;
+        for (Path f : files) {
+            try {
+                long size = Files.size(f);
+                if (!f.equals(kept) && total + size > limit)
+                    Files.deleteIfExists(f);
+                else
+                    total += size;
+            } catch (IOException e) {
+                console("Не удалось удалить сохранённую Матрицу '%s': %s%n".formatted(f, e.getLocalizedMessage()));
+            }
+        }
+    }
+
+    /**
+     * Отмечает открытие файла временем изменения, по которому {@link #prune(Path, long)}
+     * судит, как давно файл был нужен. Неудача не мешает открытию.
+     */
+    private static void markUsed(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static FileTime lastUsed(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Выписывает накопленное в буфере на указанное место файла и очищает буфер.
+     * @param channel  канал файла.
+     * @param buffer   буфер, заполненный с начала.
+     * @param position место в файле, куда пишется содержимое буфера.
+     * @return место в файле сразу за записанным.
+     * @throws IOException при ошибке записи.
+     */
+    private static long flush(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        buffer.clear();
+        return position;
+    }
+
+    /**
+     * Вычисляет ключ хранилища: SHA-256 от названий карт, названий и координат
+     * астр в порядке Матрицы и всех составляющих профиля.
+     * @param astras  объединённый список астр Матрицы.
+     * @param profile профиль, с которым рассчитываются резонансы.
+     * @return ключ длиной {@link #KEY_BYTES} байт.
+     */
+    private static byte[] keyOf(List<Astra> astras, ResonanceProfile profile) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer number = ByteBuffer.allocate(8);
+        digest.update(number.clear().putInt(VERSION).array(), 0, 4);
+        digest.update(number.clear().putInt(profile.edgeHarmonic()).array(), 0, 4);
+        digest.update(number.clear().putDouble(profile.primalOrb()).array(), 0, 8);
+        digest.update((byte) (profile.halfOrbsForDoubles() ? 1 : 0));
+        digest.update((byte) (profile.arcSeconds() ? 1 : 0));
+        for (Astra astra : astras) {
+            String heaven = astra.getHeaven() == null ? "" : astra.getHeaven().getName();
+            digest.update(heaven.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(astra.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(number.clear().putDouble(astra.getZodiacPosition()).array(), 0, 8);
+        }
+        return digest.digest();
+    }
+
+    @Override
+    public void write(ResonanceBlock block) {
+        ResonanceStore target = writable;
+        if (target == null) {
+            synchronized (this) {
+                if (writable == null) writable = materialize();
+                target = writable;
+            }
+        }
+        target.write(block);
+    }
+
+    /**
+     * Переносит все пары из файла в обычное хранилище способа Матрицы.
+     * @return хранилище, содержащее все пары.
+     */
+    private ResonanceStore materialize() {
+        ResonanceStore target = storage.createStore(astras, profile);
+        int n = astras.size();
+        ResonanceBlock block = new ResonanceBlock(profile.edgeHarmonic());
+        for (int i = 0; i < n - 1; i++) {
+            for (int j = i + 1; j < n; j++) {
+                int base = recordOf(i, j);
+                int start = data.getInt(base + START), count = data.getInt(base + COUNT);
+                block.openPair(i, j, data.getDouble(base + ARC), data.getDouble(base + ORB));
+                for (int a = start; a < start + count; a++) {
+                    long code = data.getLong(poolOffset + a * ASPECT_BYTES);
+                    block.addAspect(AspectList.numericOf(code), AspectList.multiplicityOf(code),
+                            data.getDouble(poolOffset + a * ASPECT_BYTES + 8));
+                }
+            }
+            target.write(block);
+            block.clear();
+        }
+        return target;
+    }
+
+    @Override
+    public ResonanceBatch read(int i, int j) {
+        ResonanceStore target = writable;
+        if (target != null) return target.read(i, j);
+        int base = recordOf(i, j);
+        double orb = data.getDouble(base + ORB);
+        int start = data.getInt(base + START), count = data.getInt(base + COUNT);
+        AspectList aspects = AspectList.EMPTY;
+        if (count > 0) {
+            long[] codes = new long[count];
+            double[] clearances = new double[count];
+            for (int a = 0; a < count; a++) {
+                int offset = poolOffset + (start + a) * ASPECT_BYTES;
+                codes[a] = data.getLong(offset);
+                clearances[a] = data.getDouble(offset + 8);
+            }
+            aspects = new AspectList(codes, clearances, 0, count, orb);
+        }
+        return new ResonanceBatch(astras.get(i), astras.get(j),
+                data.getDouble(base + ARC), orb, profile.edgeHarmonic(), aspects);
+    }
+
+    @Override
+    public boolean resonates(int i, int j, int harmonic) {
+        ResonanceStore target = writable;
+        if (target != null) return target.resonates(i, j, harmonic);
+        if (harmonic <= 0) throw new IllegalArgumentException();
+        return harmonic <= profile.edgeHarmonic()
+                && (data.getLong(recordOf(i, j) + MASK + (harmonic >>> 6) * 8) & 1L << harmonic) != 0;
+    }
+
+    @Override
+    public void copyMask(int i, int j, long[] out, int offset) {
+        ResonanceStore target = writable;
+        if (target != null) {
+            target.copyMask(i, j, out, offset);
+            return;
+        }
+        int base = recordOf(i, j);
+        for (int w = 0, words = ResonanceStore.maskWords(profile.edgeHarmonic()); w < words; w++)
+            out[offset + w] = data.getLong(base + MASK + w * 8);
+    }
+
+    @Override
+    public int nextStored(int fromPair) {
+        ResonanceStore target = writable;
+        if (target != null) return target.nextStored(fromPair);
+        int p = fromPair;
+        if (storage == MatrixStorage.SPARSE)
+            while (p < pairCount && data.getInt(HEADER_BYTES + p * pairBytes + COUNT) == 0) p++;
+        return p < pairCount ? p : -1;
+    }
+
+    @Override
+    public void close() {
+        ResonanceStore target = writable;
+        if (target != null) target.close();
+    }
+
+    private int recordOf(int i, int j) {
+        return HEADER_BYTES + ResonanceStore.pairIndex(i, j, astras.size()) * pairBytes;
+    }
+}
@@ -0,0 +1,21 @@
+package ru.swetophor.astrowidjaspring.model;
+
+/**
+ * Способ расчёта резонансов при построении {@link AstroMatrix АстроМатрицы}.
+ */
+public enum MatrixBuild {
+    /**
+     * Все пары рассчитываются сразу при построении, в одном потоке.
+     */
+    SEQUENTIAL,
+    /**
+     * Все пары рассчитываются сразу при построении, в общем пуле потоков;
+     * треугольник пар делится на равные по количеству пар куски.
+     */
+    PARALLEL,
+    /**
+     * При построении ничего не рассчитывается; каждая пара рассчитывается
+     * при первом обращении к ней и далее хранится готовой.
+     */
+    LAZY
+}
@@ -0,0 +1,62 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+
+import java.util.List;
+
+/**
+ * Способ хранения рассчитанных резонансов в {@link AstroMatrix АстроМатрице}.
+ */
+public enum MatrixStorage {
+    /**
+     * Каждая пара астр хранится готовым объектом {@link ResonanceBatch}.
+     */
+    OBJECTS {
+        @Override
+        ResonanceStore createStore(List<Astra> astras, ResonanceProfile profile) {
+            return new ObjectResonanceStore(astras, profile.edgeHarmonic());
+        }
+    },
+    /**
+     * Дуги, орбисы и аспекты всех пар хранятся в плоских примитивных массивах,
+     * объекты резонансов создаются только при обращении к паре.
+     * Расходует на порядок меньше памяти на больших групповых картах.
+     */
+    PACKED {
+        @Override
+        ResonanceStore createStore(List<Astra> astras, ResonanceProfile profile) {
+            return new PackedResonanceStore(astras, profile.edgeHarmonic());
+        }
+    },
+    /**
+     * Хранятся только пары, у которых есть хотя бы один аспект; пустые пары
+     * не занимают места и пропускаются при обходе {@link AstroMatrix#stream()}.
+     * Выгоден при строгих орбисах или низкой крайней гармонике на больших каталогах.
+     */
+    SPARSE {
+        @Override
+        ResonanceStore createStore(List<Astra> astras, ResonanceProfile profile) {
+            return new SparseResonanceStore(astras, profile);
+        }
+    },
+    /**
+     * Устроено как {@link #PACKED}, но данные пар лежат вне кучи, в сегментах
+     * памяти {@link java.lang.foreign.MemorySegment}. Для очень больших наборов астр,
+     * чтобы не раздувать кучу и не затягивать сборку мусора; память освобождается
+     * {@link AstroMatrix#close() закрытием Матрицы}.
+     */
+    OFF_HEAP {
+        @Override
+        ResonanceStore createStore(List<Astra> astras, ResonanceProfile profile) {
+            return new OffHeapResonanceStore(astras, profile.edgeHarmonic());
+        }
+    };
+
+    /**
+     * Создаёт пустое хранилище для резонансов между указанными астрами.
+     * @param astras  объединённый список астр Матрицы.
+     * @param profile орбис и крайняя гармоника, с которыми рассчитываются резонансы.
+     * @return хранилище соответствующего типа.
+     */
+    abstract ResonanceStore createStore(List<Astra> astras, ResonanceProfile profile);
+}
@@ -0,0 +1,66 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Хранилище, держащее для каждой пары готовый объект {@link ResonanceBatch}.
+ * Объекты лежат в плоском массиве по треугольной раскладке,
+ * так что место под нижний треугольник не расходуется.
+ * Рядом хранятся гармонические маски пар для быстрого поиска паттернов.
+ */
+final class ObjectResonanceStore implements ResonanceStore {
+    private final List<Astra> astras;
+    private final ResonanceBatch[] batches;
+    private final int ultimateHarmonic;
+    /**
+     * Гармонические маски пар, по {@link ResonanceStore#maskWords(int) нескольку слов} на пару.
+     */
+    private final long[] masks;
+    private final int words;
+
+    ObjectResonanceStore(List<Astra> astras, int ultimateHarmonic) {
+        this.astras = astras;
+        this.ultimateHarmonic = ultimateHarmonic;
+        int pairs = ResonanceStore.pairCount(astras.size());
+        batches = new ResonanceBatch[pairs];
+        words = ResonanceStore.maskWords(ultimateHarmonic);
+        masks = new long[Math.multiplyExact(pairs, words)];
+    }
+
+    @Override
+    public void write(ResonanceBlock block) {
+        for (int k = 0; k < block.size(); k++) {
+            int i = block.first(k), j = block.second(k);
+            int p = ResonanceStore.pairIndex(i, j, astras.size());
+            batches[p] = new ResonanceBatch(astras.get(i), astras.get(j),
+                    block.arc(k), block.orb(k), block.ultimateHarmonic(),
+                    block.aspectsOf(k));
+            Arrays.fill(masks, p * words, (p + 1) * words, 0L);
+            block.markResonances(k, masks, p * words);
+        }
+    }
+
+    @Override
+    public ResonanceBatch read(int i, int j) {
+        return batches[ResonanceStore.pairIndex(i, j, astras.size())];
+    }
+
+    @Override
+    public int nextStored(int fromPair) {
+        return fromPair < batches.length ? fromPair : -1;
+    }
+
+    @Override
+    public boolean resonates(int i, int j, int harmonic) {
+        return ResonanceStore.testMask(masks,
+                ResonanceStore.pairIndex(i, j, astras.size()) * words, harmonic, ultimateHarmonic);
+    }
+
+    @Override
+    public void copyMask(int i, int j, long[] out, int offset) {
+        System.arraycopy(masks, ResonanceStore.pairIndex(i, j, astras.size()) * words, out, offset, words);
+    }
+}
@@ -0,0 +1,198 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import ru.swetophor.astrowidjaspring.model.astro.AspectList;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.foreign.ValueLayout.*;
+
+/**
+ * Хранилище резонансов вне кучи: данные всех пар лежат в сегментах памяти
+ * {@link MemorySegment}, выделенных через {@link Arena}, и не нагружают сборщик мусора.
+ * Устроено как {@link PackedResonanceStore упакованное}: записи пар фиксированной длины
+ * по треугольной раскладке (дуга, орбис, участок в пуле аспектов и гармоническая маска)
+ * и общий пул аспектов, где каждый аспект занимает код и зазор.
+ * <p>
+ * Сегмент записей пар выделяется сразу, по количеству астр и крайней гармонике.
+ * Пул растёт по мере записи: новый пул выделяется в собственной арене, а арена
+ * прежнего закрывается, так что память освобождается сразу, а не при закрытии хранилища.
+ * Поэтому пул читается и пишется только под замком хранилища; объект {@link ResonanceBatch}
+ * при чтении получает копию аспектов пары в куче и остаётся годным и после закрытия.
+ * Маски читаются без замка, поскольку сегмент записей пар не перевыделяется.
+ * <p>
+ * Память освобождается {@link #close()}, после чего хранилище непригодно.
+ */
+final class OffHeapResonanceStore implements ResonanceStore {
+    /**
+     * Смещения полей в записи пары.
+     */
+    private static final long ARC = 0, ORB = 8, START = 16, COUNT = 20, MASK = 24;
+    /**
+     * Длина записи одного аспекта в пуле: код {@code long} и зазор {@code double}.
+     */
+    private static final long ASPECT_BYTES = 16;
+
+    private final List<Astra> astras;
+    private final int ultimateHarmonic;
+    private final int pairCount, words;
+    /**
+     * Длина записи пары в байтах.
+     */
+    private final long pairBytes;
+    private final Arena arena;
+    private boolean closed;
+    /**
+     * Записи пар по треугольной раскладке.
+     */
+    private final MemorySegment pairs;
+    private Arena poolArena;
+    /**
+     * Пул аспектов: {@link AspectList#encode(int, int, int) коды} и зазоры;
+     * участок каждой пары упорядочен по убыванию силы.
+     */
+    private MemorySegment pool;
+    /**
+     * Сколько аспектов вмещает пул, сколько мест в нём занято
+     * и сколько из них занято устаревшими участками пар, записанных повторно.
+     */
+    private int capacity, poolSize, garbage;
+    /**
+     * Рабочие массивы для упорядочения аспектов пары перед записью в пул
+     * и для её гармонической маски.
+     */
+    private long[] scratchCodes = new long[16];
+    private double[] scratchClearances = new double[16];
+    private final long[] scratchMask;
+
+    OffHeapResonanceStore(List<Astra> astras, int ultimateHarmonic) {
+        this.astras = astras;
+        this.ultimateHarmonic = ultimateHarmonic;
+        words = ResonanceStore.maskWords(ultimateHarmonic);
+        scratchMask = new long[words];
+        pairBytes = MASK + words * 8L;
+        pairCount = ResonanceStore.pairCount(astras.size());
+        arena = Arena.ofShared();
+        pairs = arena.allocate(Math.max(pairCount * pairBytes, 8), 8);
+        capacity = Math.max(pairCount * 2, 16);
+        poolArena = Arena.ofShared();
+        pool = poolArena.allocate(capacity * ASPECT_BYTES, 8);
+    }
+
+    @Override
+    public synchronized void write(ResonanceBlock block) {
+        for (int k = 0; k < block.size(); k++) {
+            long base = ResonanceStore.pairIndex(block.first(k), block.second(k), astras.size()) * pairBytes;
+            int count = block.aspectsTo(k) - block.aspectsFrom(k);
+            ensureCapacity(poolSize + count);
+            if (scratchCodes.length < count) {
+                scratchCodes = new long[count];
+                scratchClearances = new double[count];
+            }
+            block.copyAspects(k, scratchCodes, scratchClearances, 0);
+            for (int a = 0; a < count; a++) {
+                long offset = (poolSize + a) * ASPECT_BYTES;
+                pool.set(JAVA_LONG, offset, scratchCodes[a]);
+                pool.set(JAVA_DOUBLE, offset + 8, scratchClearances[a]);
+            }
+            Arrays.fill(scratchMask, 0L);
+            block.markResonances(k, scratchMask, 0);
+
+            garbage += pairs.get(JAVA_INT, base + COUNT);
+            pairs.set(JAVA_DOUBLE, base + ARC, block.arc(k));
+            pairs.set(JAVA_DOUBLE, base + ORB, block.orb(k));
+            pairs.set(JAVA_INT, base + START, poolSize);
+            pairs.set(JAVA_INT, base + COUNT, count);
+            for (int w = 0; w < words; w++)
+                pairs.set(JAVA_LONG, base + MASK + w * 8L, scratchMask[w]);
+            poolSize += count;
+        }
+        if (garbage > poolSize / 2) {
+            int size = poolSize - garbage;
+            relocate(Math.max(size + (size >> 1), 16));
+        }
+    }
+
+    @Override
+    public synchronized ResonanceBatch read(int i, int j) {
+        long base = ResonanceStore.pairIndex(i, j, astras.size()) * pairBytes;
+        double orb = pairs.get(JAVA_DOUBLE, base + ORB);
+        int start = pairs.get(JAVA_INT, base + START), count = pairs.get(JAVA_INT, base + COUNT);
+        AspectList aspects = AspectList.EMPTY;
+        if (count > 0) {
+            long[] codes = new long[count];
+            double[] clearances = new double[count];
+            for (int a = 0; a < count; a++) {
+                long offset = (start + a) * ASPECT_BYTES;
+                codes[a] = pool.get(JAVA_LONG, offset);
+                clearances[a] = pool.get(JAVA_DOUBLE, offset + 8);
+            }
+            aspects = new AspectList(codes, clearances, 0, count, orb);
+        }
+        return new ResonanceBatch(astras.get(i), astras.get(j),
+                pairs.get(JAVA_DOUBLE, base + ARC), orb, ultimateHarmonic, aspects);
+    }
+
+    @Override
+    public int nextStored(int fromPair) {
+        return fromPair < pairCount ? fromPair : -1;
+    }
+
+    @Override
+    public boolean resonates(int i, int j, int harmonic) {
+        if (harmonic <= 0) throw new IllegalArgumentException();
+        if (harmonic > ultimateHarmonic) return false;
+        long base = ResonanceStore.pairIndex(i, j, astras.size()) * pairBytes;
+        return (pairs.get(JAVA_LONG, base + MASK + (harmonic >>> 6) * 8L) & 1L << harmonic) != 0;
+    }
+
+    @Override
+    public void copyMask(int i, int j, long[] out, int offset) {
+        long base = ResonanceStore.pairIndex(i, j, astras.size()) * pairBytes;
+        for (int w = 0; w < words; w++)
+            out[offset + w] = pairs.get(JAVA_LONG, base + MASK + w * 8L);
+    }
+
+    /**
+     * Освобождает память записей пар и пула.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        poolArena.close();
+        arena.close();
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > capacity)
+            relocate(Math.max(required, capacity + (capacity >> 1)));
+    }
+
+    /**
+     * Переписывает действующие участки пар в новый пул указанной вместимости,
+     * укладывая их в порядке обхода треугольника, и освобождает прежний пул.
+     * @param newCapacity сколько аспектов должен вмещать новый пул.
+     */
+    private void relocate(int newCapacity) {
+        Arena newArena = Arena.ofShared();
+        MemorySegment newPool = newArena.allocate(newCapacity * ASPECT_BYTES, 8);
+        int position = 0;
+        for (int p = 0; p < pairCount; p++) {
+            long base = p * pairBytes;
+            int start = pairs.get(JAVA_INT, base + START), count = pairs.get(JAVA_INT, base + COUNT);
+            MemorySegment.copy(pool, start * ASPECT_BYTES, newPool, position * ASPECT_BYTES, count * ASPECT_BYTES);
+            pairs.set(JAVA_INT, base + START, position);
+            position += count;
+        }
+        poolArena.close();
+        poolArena = newArena;
+        pool = newPool;
+        capacity = newCapacity;
+        poolSize = position;
+        garbage = 0;
+    }
+}
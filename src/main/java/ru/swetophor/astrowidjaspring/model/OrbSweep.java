@@ -0,0 +1,220 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import lombok.Getter;
+import ru.swetophor.astrowidjaspring.config.Settings;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+import ru.swetophor.astrowidjaspring.utils.CelestialMechanics;
+import ru.swetophor.astrowidjaspring.utils.Decorator;
+import ru.swetophor.astrowidjaspring.utils.HarmonicArcs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Прогон анализа карт по диапазону делителей орбиса ({@link Settings#getOrbDivisor()})
+ * за один проход, без построения Матрицы для каждого делителя.
+ * <p>
+ * Для каждой пары астр один раз вычисляются её дуга и зазоры во всех гармониках
+ * до крайней — дуги в картах гармоник, от орбиса не зависящие. Для каждого делителя
+ * кандидатами пары остаются гармоники, зазор которых меньше орбиса, а из них
+ * аспекты выбираются тем же правилом, что и в {@link AstroMatrix Матрице}
+ * ({@link ResonanceBatch#collectAspects(double, double, int[], int, int, double[], ResonanceBlock)}),
+ * так что аспекты и связи по гармоникам совпадают с Матрицей, построенной при этом делителе.
+ * Паттерны выделяются как компоненты связности по всем картам вместе, как
+ * {@link AstroMatrix#findPatterns(int, List)}, и оцениваются по средней силе, как {@link Pattern}.
+ * <p>
+ * Крайняя гармоника и сокращение орбиса для разных карт берутся из текущих настроек.
+ * Зазоры всех пар хранятся одновременно: {@code N * (N - 1) / 2} пар на крайнюю гармонику
+ * чисел {@code double}. В {@link Settings#isArcSecondMode() режиме угловых секунд} дуги и зазоры
+ * считаются, как в Матрице, в целых секундах по округлённым позициям астр, и попадание
+ * в орбис проверяется тоже в секундах; сила паттернов, как и у {@link Pattern},
+ * считается по точным позициям.
+ */
+@Getter
+public class OrbSweep {
+    /**
+     * Карты, по астрам которых проводится прогон.
+     */
+    private final Chart[] heavens;
+    /**
+     * До какой гармоники рассчитываются резонансы.
+     */
+    private final int edgeHarmonic;
+    /**
+     * Итоги по каждому делителю, по возрастанию делителя.
+     */
+    private final List<DivisorSummary> summaries;
+
+    /**
+     * Итоги анализа при одном делителе орбиса.
+     * @param divisor         делитель орбиса.
+     * @param primalOrb       первичный орбис при этом делителе.
+     * @param aspects         сколько всего аспектов у всех пар.
+     * @param resonantPairs   сколько пар имеют хоть один аспект.
+     * @param patterns        сколько паттернов во всех гармониках.
+     * @param averageStrength средняя сила паттернов (среднее их средних сил), или 0, если паттернов нет.
+     */
+    public record DivisorSummary(int divisor, double primalOrb, int aspects, int resonantPairs,
+                                 int patterns, double averageStrength) {
+    }
+
+    /**
+     * Прогоняет анализ указанных карт по всем делителям орбиса из диапазона.
+     * @param fromDivisor наименьший делитель (наибольший орбис).
+     * @param toDivisor   наибольший делитель (наименьший орбис).
+     * @param charts      анализируемые карты.
+     * @throws IllegalArgumentException если диапазон делителей пуст или начинается не с положительного.
+     */
+    public OrbSweep(int fromDivisor, int toDivisor, Chart... charts) {
+        if (fromDivisor < 1 || toDivisor < fromDivisor)
+            throw new IllegalArgumentException("делители орбиса от %d до %d не образуют диапазона"
+                    .formatted(fromDivisor, toDivisor));
+        heavens = charts;
+        edgeHarmonic = Settings.getEdgeHarmonic();
+        boolean halfOrbsForDoubles = Settings.isHalfOrbsForDoubles();
+        boolean arcSecondMode = Settings.isArcSecondMode();
+
+        List<Astra> astras = Arrays.stream(charts)
+                .flatMap(c -> c.getAstras().stream())
+                .toList();
+        int n = astras.size(), pairs = ResonanceStore.pairCount(n);
+        double[] arcs = new double[pairs];
+        int[] arcSeconds = arcSecondMode ? new int[pairs] : null;
+        // дуги по точным позициям, для силы паттернов; без режима секунд это сами дуги пар
+        double[] exactArcs = arcSecondMode ? new double[pairs] : arcs;
+        boolean[] sameHeaven = new boolean[pairs];
+        double[] clearances = new double[pairs * edgeHarmonic];
+        int[] harmonics = new int[edgeHarmonic];
+        for (int h = 1; h <= edgeHarmonic; h++)
+            harmonics[h - 1] = h;
+        double[] row = new double[edgeHarmonic];
+        for (int i = 0, p = 0; i < n - 1; i++)
+            for (int j = i + 1; j < n; j++, p++) {
+                Astra a = astras.get(i), b = astras.get(j);
+                sameHeaven[p] = Astra.ofSameHeaven(a, b);
+                if (arcSeconds != null) {
+                    arcSeconds[p] = CelestialMechanics.arcBetween(a.getArcSeconds(), b.getArcSeconds());
+                    arcs[p] = CelestialMechanics.fromArcSeconds(arcSeconds[p]);
+                    exactArcs[p] = CelestialMechanics.getArc(a, b);
+                    for (int h = 1; h <= edgeHarmonic; h++)
+                        clearances[p * edgeHarmonic + h - 1] =
+                                CelestialMechanics.fromArcSeconds(CelestialMechanics.arcInHarmonic(arcSeconds[p], h));
+                } else {
+                    arcs[p] = CelestialMechanics.getArc(a, b);
+                    HarmonicArcs.inHarmonics(arcs[p], harmonics, 0, edgeHarmonic, row);
+                    System.arraycopy(row, 0, clearances, p * edgeHarmonic, edgeHarmonic);
+                }
+            }
+
+        List<DivisorSummary> list = new ArrayList<>(toDivisor - fromDivisor + 1);
+        for (int d = fromDivisor; d <= toDivisor; d++)
+            list.add(summarize(d, halfOrbsForDoubles, astras, arcs, arcSeconds, exactArcs, sameHeaven, clearances));
+        summaries = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Подводит итоги при одном делителе: отбирает аспекты каждой пары по порогу орбиса,
+     * размечает связи по гармоникам и выделяет паттерны.
+     * Если даны дуги пар в угловых секундах, аспекты отбираются по ним,
+     * а сила паттернов считается по дугам между точными позициями.
+     */
+    private DivisorSummary summarize(int divisor, boolean halfOrbsForDoubles, List<Astra> astras,
+                                     double[] arcs, int[] arcSeconds, double[] exactArcs,
+                                     boolean[] sameHeaven, double[] clearances) {
+        double primalOrb = CelestialMechanics.CIRCLE / divisor;
+        int n = astras.size(), pairs = arcs.length, words = ResonanceStore.maskWords(edgeHarmonic);
+        long[] masks = new long[pairs * words];
+        // для каждой гармоники: астры, имеющие хоть с кем-то номинальный аспект этого числа
+        boolean[][] exact = new boolean[edgeHarmonic + 1][];
+        int[] candidates = new int[edgeHarmonic];
+        double[] arcsInHarmonics = new double[edgeHarmonic];
+        ResonanceBlock block = new ResonanceBlock(edgeHarmonic);
+        int aspects = 0, resonantPairs = 0;
+        for (int i = 0, p = 0; i < n - 1; i++)
+            for (int j = i + 1; j < n; j++, p++) {
+                double orb = !sameHeaven[p] && halfOrbsForDoubles ? primalOrb / 2 : primalOrb;
+                // целое число секунд меньше орбиса в секундах, только если меньше его округления вверх
+                double limit = arcSeconds == null ? orb :
+                        CelestialMechanics.fromArcSeconds((int) Math.ceil(orb * CelestialMechanics.SECONDS_PER_DEGREE));
+                int count = 0;
+                for (int h = 1; h <= edgeHarmonic; h++) {
+                    double clearance = clearances[p * edgeHarmonic + h - 1];
+                    if (clearance < limit) {
+                        candidates[count] = h;
+                        arcsInHarmonics[count++] = clearance;
+                    }
+                }
+                block.clear();
+                block.openPair(i, j, arcs[p], orb);
+                if (arcSeconds != null)
+                    ResonanceBatch.collectArcSecondAspects(arcSeconds[p], orb, candidates, 0, count, block);
+                else
+                    ResonanceBatch.collectAspects(arcs[p], orb, candidates, 0, count, arcsInHarmonics, block);
+                block.markResonances(0, masks, p * words);
+                int from = block.aspectsFrom(0), to = block.aspectsTo(0);
+                aspects += to - from;
+                if (to > from) resonantPairs++;
+                for (int a = from; a < to; a++) {
+                    int numeric = block.numeric(a);
+                    if (exact[numeric] == null) exact[numeric] = new boolean[n];
+                    exact[numeric][i] = true;
+                    exact[numeric][j] = true;
+                }
+            }
+
+        int patterns = 0;
+        double strengthSum = 0.0;
+        for (int h = 1; h <= edgeHarmonic; h++) {
+            if (exact[h] == null) continue;
+            DisjointSet components = new DisjointSet(n);
+            for (int i = 0, p = 0; i < n - 1; i++)
+                for (int j = i + 1; j < n; j++, p++)
+                    if (ResonanceStore.testMask(masks, p * words, h, edgeHarmonic))
+                        components.union(i, j);
+            double[] totals = new double[n];
+            for (int i = 0, p = 0; i < n - 1; i++)
+                for (int j = i + 1; j < n; j++, p++)
+                    if (components.sizeOf(i) > 1 && components.find(i) == components.find(j))
+                        totals[components.find(i)] += arcSeconds == null ?
+                                clearances[p * edgeHarmonic + h - 1] :
+                                CelestialMechanics.arcInHarmonic(exactArcs[p], h);
+            for (int root = 0; root < n; root++) {
+                if (components.find(root) != root || components.sizeOf(root) < 2) continue;
+                boolean valid = false;
+                List<Chart> charts = new ArrayList<>(2);
+                for (int v = 0; v < n; v++)
+                    if (components.find(v) == root) {
+                        valid |= exact[h][v];
+                        if (!charts.contains(astras.get(v).getHeaven()))
+                            charts.add(astras.get(v).getHeaven());
+                    }
+                if (!valid) continue;
+                int size = components.sizeOf(root);
+                double orb = charts.size() > 1 && halfOrbsForDoubles ? primalOrb / 2 : primalOrb;
+                strengthSum += CelestialMechanics.calculateStrength(orb, totals[root] / (size * (size - 1) / 2));
+                patterns++;
+            }
+        }
+        return new DivisorSummary(divisor, primalOrb, aspects, resonantPairs, patterns,
+                patterns == 0 ? 0.0 : strengthSum / patterns);
+    }
+
+    /**
+     * @return таблица итогов по делителям: орбис, число аспектов и резонирующих пар,
+     * число паттернов и их средняя сила.
+     */
+    public String getSweepReport() {
+        return Decorator.doubleFrame("Прогон орбисов для: "
+                + Arrays.stream(heavens).map(Chart::getName).collect(Collectors.joining(" и ")))
+                + "делитель  орбис    аспектов  пар    паттернов  сила%n".formatted()
+                + summaries.stream()
+                .map(s -> "%8d  %6.2f°  %8d  %5d  %9d  %3.0f%%%n".formatted(
+                        s.divisor(), s.primalOrb(), s.aspects(), s.resonantPairs(),
+                        s.patterns(), s.averageStrength()))
+                .collect(Collectors.joining());
+    }
+}
@@ -0,0 +1,140 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import ru.swetophor.astrowidjaspring.model.astro.AspectList;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Упакованное хранилище резонансов: дуги, орбисы и аспекты всех пар
+ * держатся в плоских примитивных массивах, индексируемых номером пары
+ * в треугольной раскладке. Аспекты пар лежат в общем пуле,
+ * для каждой пары запоминается начало и длина её участка.
+ * Объект {@link ResonanceBatch} создаётся только при обращении к паре,
+ * как представление поверх этих массивов: его список аспектов
+ * ссылается прямо на участок пула, без копирования.
+ * Для каждой пары хранится также её гармоническая маска.
+ * Запись может переложить пул, поэтому пары и маски читаются под замком хранилища;
+ * выданный список аспектов ссылается на прежний пул и остаётся верным.
+ */
+final class PackedResonanceStore implements ResonanceStore {
+    private final List<Astra> astras;
+    private final int ultimateHarmonic;
+    /**
+     * Дуга между астрами каждой пары.
+     */
+    private final double[] arcs;
+    /**
+     * Орбис, с которым рассчитана каждая пара.
+     */
+    private final double[] orbs;
+    /**
+     * Начало участка пары в пуле аспектов и количество её аспектов.
+     */
+    private final int[] starts, counts;
+    /**
+     * Гармонические маски пар, по {@link ResonanceStore#maskWords(int) нескольку слов} на пару.
+     */
+    private final long[] masks;
+    private final int words;
+    /**
+     * Пул аспектов: {@link AspectList#encode(int, int, int) коды} и зазоры;
+     * участок каждой пары упорядочен по убыванию силы.
+     */
+    private long[] codes;
+    private double[] clearances;
+    /**
+     * Сколько места в пуле уже занято.
+     */
+    private int poolSize;
+    /**
+     * Сколько места в пуле занято устаревшими участками пар, записанных повторно.
+     */
+    private int garbage;
+
+    PackedResonanceStore(List<Astra> astras, int ultimateHarmonic) {
+        this.astras = astras;
+        this.ultimateHarmonic = ultimateHarmonic;
+        int pairs = ResonanceStore.pairCount(astras.size());
+        arcs = new double[pairs];
+        orbs = new double[pairs];
+        starts = new int[pairs];
+        counts = new int[pairs];
+        words = ResonanceStore.maskWords(ultimateHarmonic);
+        masks = new long[Math.multiplyExact(pairs, words)];
+        int capacity = Math.max(pairs * 2, 16);
+        codes = new long[capacity];
+        clearances = new double[capacity];
+    }
+
+    @Override
+    public synchronized void write(ResonanceBlock block) {
+        for (int k = 0; k < block.size(); k++) {
+            int p = ResonanceStore.pairIndex(block.first(k), block.second(k), astras.size());
+            int from = block.aspectsFrom(k), to = block.aspectsTo(k);
+            ensureCapacity(poolSize + to - from);
+            garbage += counts[p];
+            arcs[p] = block.arc(k);
+            orbs[p] = block.orb(k);
+            starts[p] = poolSize;
+            counts[p] = to - from;
+            Arrays.fill(masks, p * words, (p + 1) * words, 0L);
+            block.markResonances(k, masks, p * words);
+            poolSize = block.copyAspects(k, codes, clearances, poolSize);
+        }
+        if (garbage > poolSize / 2) compact();
+    }
+
+    @Override
+    public synchronized ResonanceBatch read(int i, int j) {
+        int p = ResonanceStore.pairIndex(i, j, astras.size());
+        return new ResonanceBatch(astras.get(i), astras.get(j), arcs[p], orbs[p], ultimateHarmonic,
+                new AspectList(codes, clearances, starts[p], starts[p] + counts[p], orbs[p]));
+    }
+
+    /**
+     * Переписывает пул, выбрасывая устаревшие участки, накопившиеся
+     * при пересчёте отдельных астр; пары укладываются в порядке обхода треугольника.
+     */
+    private void compact() {
+        int size = poolSize - garbage;
+        int capacity = Math.max(size + (size >> 1), 16);
+        long[] packedCodes = new long[capacity];
+        double[] packedClearances = new double[capacity];
+        int position = 0;
+        for (int p = 0; p < counts.length; p++) {
+            System.arraycopy(codes, starts[p], packedCodes, position, counts[p]);
+            System.arraycopy(clearances, starts[p], packedClearances, position, counts[p]);
+            starts[p] = position;
+            position += counts[p];
+        }
+        codes = packedCodes;
+        clearances = packedClearances;
+        poolSize = position;
+        garbage = 0;
+    }
+
+    @Override
+    public int nextStored(int fromPair) {
+        return fromPair < counts.length ? fromPair : -1;
+    }
+
+    @Override
+    public synchronized boolean resonates(int i, int j, int harmonic) {
+        return ResonanceStore.testMask(masks,
+                ResonanceStore.pairIndex(i, j, astras.size()) * words, harmonic, ultimateHarmonic);
+    }
+
+    @Override
+    public synchronized void copyMask(int i, int j, long[] out, int offset) {
+        System.arraycopy(masks, ResonanceStore.pairIndex(i, j, astras.size()) * words, out, offset, words);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= codes.length) return;
+        int capacity = Math.max(required, codes.length + (codes.length >> 1));
+        codes = Arrays.copyOf(codes, capacity);
+        clearances = Arrays.copyOf(clearances, capacity);
+    }
+}
@@ -6,6 +6,7 @@ import ru.swetophor.astrowidjaspring.model.astro.Astra;
 import ru.swetophor.astrowidjaspring.model.astro.ZodiacPoint;
 import ru.swetophor.astrowidjaspring.model.chart.Chart;
 import ru.swetophor.astrowidjaspring.utils.CelestialMechanics;
+import ru.swetophor.astrowidjaspring.utils.HarmonicArcs;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -27,8 +28,11 @@ public class Pattern {
      */
     private final int harmonic;
     /**
-     * {@link AstroMatrix Матрица резонансов}, на базе которой выделяются аспекты и паттерны.
+     * {@link AstroMatrix Матрица резонансов}, на базе которой выделяются аспекты и паттерны;
+     * {@code null}, если паттерн задан без неё.
+     * @deprecated паттерн не должен переживать закрытие Матрицы; нужен только {@link #isValid()}.
      */
+    @Deprecated
     private final AstroMatrix analysis;
     /**
      * Сопоставление астр и суммы их зазоров с каждой другой астрой паттерна.
@@ -45,18 +49,44 @@ public class Pattern {
 
     private final List<Cluster> clusters = new ArrayList<>();
 
+    /**
+     * Задаёт новый паттерн резонансов по указанной гармонике.
+     * Паттерн не ссылается на {@link AstroMatrix Матрицу}, по которой выделен,
+     * и остаётся годным после её закрытия.
+     *
+     * @param harmonic указанная гармоника.
+     */
+    public Pattern(int harmonic) {
+        this(harmonic, (AstroMatrix) null);
+    }
+
     /**
      * Задаёт новый паттерн резонансов по указанной гармонике,
      * рассчитываемый на базе указанной матрицы.
      *
      * @param harmonic указанная гармоника.
      * @param host     указанная {@link AstroMatrix АстроМатрица}.
+     * @deprecated паттерн, держащий Матрицу, негоден после её закрытия;
+     * используйте {@link #Pattern(int)}.
      */
+    @Deprecated
     public Pattern(int harmonic, AstroMatrix host) {
         this.harmonic = harmonic;
         this.analysis = host;
     }
 
+    /**
+     * Задаёт новый паттерн резонансов по указанной гармонике.
+     * В него сразу добавляются астры из предоставленного списка.
+     *
+     * @param harmonic указанная гармоника.
+     * @param astras   предложенный список астр.
+     */
+    public Pattern(int harmonic, List<Astra> astras) {
+        this(harmonic);
+        astras.forEach(this::addAstra);
+    }
+
     /**
      * Задаёт новый паттерн резонансов по указанной гармонике,
      * рассчитываемый на базе указанной матрицы. В него сразу
@@ -65,7 +95,10 @@ public class Pattern {
      * @param harmonic указанная гармоника.
      * @param astras   предложенный список астр.
      * @param host     указанная {@link AstroMatrix АстроМатрица}.
+     * @deprecated паттерн, держащий Матрицу, негоден после её закрытия;
+     * используйте {@link #Pattern(int, List)}.
      */
+    @Deprecated
     public Pattern(int harmonic, List<Astra> astras, AstroMatrix host) {
         this(harmonic, host);
         astras.forEach(this::addAstra);
@@ -86,9 +119,15 @@ public class Pattern {
         if (!heavens.contains(astra.getHeaven()))
             heavens.add(astra.getHeaven());
 
+        double[] clearances = new double[elements.size()];
+        int count = 0;
+        double position = astra.getZodiacPosition();
+        for (Astra a : elements.keySet())
+            clearances[count++] = arcBetween(position, a.getZodiacPosition());
+        HarmonicArcs.forHarmonic(clearances, count, harmonic, clearances);
+
         double clearanceSum = 0.0;
-        for (Astra a : elements.keySet()) {
-            double clearance = getArcForHarmonic(astra, a, harmonic);
+        for (double clearance : clearances) {
             clearanceSum += clearance;
             elements.forEach((key, value) ->
                     elements.put(key, value + clearance));
@@ -360,15 +399,23 @@ public class Pattern {
      * одну астру, или если ни в одной из пар элементов нет номинального резонанса.
      * {@code true}, если хотя бы в одной паре номинальный резонанс
      * наличествует.
+     * @throws IllegalStateException если паттерн задан без Матрицы.
+     * @deprecated паттерны {@link AstroMatrix#findPatterns(int, List) Матрицы}
+     * уже содержат номинальный аспект; проверка требует открытой Матрицы.
      */
+    @Deprecated
     public boolean isValid() {
+        if (analysis == null)
+            throw new IllegalStateException("Паттерн задан без Матрицы");
 
-        List<Astra> astras = elements.keySet().stream().toList();
+        int[] slots = elements.keySet().stream()
+                .mapToInt(analysis::slotOf)
+                .toArray();
 
-        return IntStream.range(0, astras.size() - 1)
-                .anyMatch(i -> IntStream.range(i + 1, astras.size())
+        return IntStream.range(0, slots.length - 1)
+                .anyMatch(i -> IntStream.range(i + 1, slots.length)
                         .anyMatch(j ->
-                                analysis.inResonance(astras.get(i), astras.get(j), harmonic)));
+                                analysis.inResonance(slots[i], slots[j], harmonic)));
     }
 
     /**
@@ -0,0 +1,200 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import lombok.Getter;
+import ru.swetophor.astrowidjaspring.config.Settings;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+import ru.swetophor.astrowidjaspring.utils.CelestialMechanics;
+import ru.swetophor.astrowidjaspring.utils.Decorator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Дерево слияния паттернов одной гармоники по мере роста орбиса.
+ * <p>
+ * Пара астр связывается в гармонике, когда первичный орбис превосходит её зазор —
+ * дугу между астрами в карте гармоники (для астр из разных карт вдвое больший, если
+ * {@link Settings#isHalfOrbsForDoubles() орбис для них сокращается}). Все пары
+ * упорядочиваются по этому порогу и сливаются в {@link DisjointSet систему непересекающихся
+ * множеств} по Краскалу: каждое слияние двух компонент даёт узел дерева с орбисом,
+ * начиная с которого эти астры составляют один паттерн. Так за одно упорядочение
+ * пар известны паттерны при любом орбисе, орбис, при котором каждая астра впервые
+ * входит в паттерн, и устойчивость каждого паттерна — на каком отрезке орбисов
+ * он существует, не сливаясь с другими.
+ * <p>
+ * Узлы нумеруются так: {@code 0..N-1} — астры, {@code N + k} — {@code k}-е слияние.
+ * Связность понимается геометрически, по зазору: правила отбора аспектов
+ * {@link AstroMatrix Матрицы} (глубина, кратность) здесь не применяются.
+ * Каждая связь Матрицы в гармонике есть и здесь, поэтому паттерн
+ * {@link AstroMatrix#findPatterns(int, List)} всегда лежит внутри паттерна разреза
+ * на том же орбисе. Пока {@code h · orb ≤ 180°}, связи совпадают, и паттерны Матрицы —
+ * это паттерны разреза с номинальным аспектом гармоники; выше Матрица может терять связи,
+ * чья дуга в гармонике обходит полукруг.
+ */
+@Getter
+public class PatternDendrogram {
+    /**
+     * Гармоника, по которой строится дерево.
+     */
+    private final int harmonic;
+    /**
+     * Астры всех карт, номера которых служат номерами листьев дерева.
+     */
+    private final List<Astra> astras;
+    /**
+     * Слияния в порядке возрастания орбиса.
+     */
+    private final List<Merge> merges;
+    /**
+     * Для каждой астры: первичный орбис, начиная с которого она входит в паттерн,
+     * или бесконечность, если астра одна.
+     */
+    private final double[] joinOrbs;
+    /**
+     * Для каждого узла: узел слияния, поглотившего его, или -1 для корней.
+     */
+    private final int[] parents;
+
+    /**
+     * Слияние двух компонент в один паттерн.
+     * @param orb   первичный орбис, при превышении которого компоненты сливаются.
+     * @param left  узел одной компоненты.
+     * @param right узел другой компоненты.
+     * @param size  сколько астр в получившемся паттерне.
+     */
+    public record Merge(double orb, int left, int right, int size) {
+    }
+
+    /**
+     * Строит дерево слияния паттернов для астр указанных карт.
+     * @param harmonic гармоника, по которой астры связываются.
+     * @param charts   карты, астры которых рассматриваются.
+     * @throws IllegalArgumentException если номер гармоники не положителен.
+     */
+    public PatternDendrogram(int harmonic, Chart... charts) {
+        if (harmonic < 1)
+            throw new IllegalArgumentException("гармоника должна быть положительной: " + harmonic);
+        this.harmonic = harmonic;
+        astras = Arrays.stream(charts)
+                .flatMap(c -> c.getAstras().stream())
+                .toList();
+        boolean halfOrbsForDoubles = Settings.isHalfOrbsForDoubles();
+        int n = astras.size(), pairCount = ResonanceStore.pairCount(n);
+
+        double[] thresholds = new double[pairCount];
+        int[] firsts = new int[pairCount], seconds = new int[pairCount];
+        for (int i = 0, p = 0; i < n - 1; i++)
+            for (int j = i + 1; j < n; j++, p++) {
+                firsts[p] = i;
+                seconds[p] = j;
+                double clearance = CelestialMechanics.getArcForHarmonic(astras.get(i), astras.get(j), harmonic);
+                thresholds[p] = !Astra.ofSameHeaven(astras.get(i), astras.get(j)) && halfOrbsForDoubles ?
+                        clearance * 2 : clearance;
+            }
+        int[] order = IntStream.range(0, pairCount).boxed()
+                .sorted(Comparator.comparingDouble(p -> thresholds[p]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        List<Merge> list = new ArrayList<>(Math.max(n - 1, 0));
+        joinOrbs = new double[n];
+        Arrays.fill(joinOrbs, Double.POSITIVE_INFINITY);
+        parents = new int[Math.max(2 * n - 1, 0)];
+        Arrays.fill(parents, -1);
+        // узел дерева, которым представлена компонента, по её представителю
+        int[] nodeOf = IntStream.range(0, n).toArray();
+        DisjointSet components = new DisjointSet(n);
+        for (int k = 0; k < pairCount && list.size() < n - 1; k++) {
+            int p = order[k], i = firsts[p], j = seconds[p];
+            int left = nodeOf[components.find(i)], right = nodeOf[components.find(j)];
+            if (!components.union(i, j)) continue;
+            int node = n + list.size();
+            list.add(new Merge(thresholds[p], left, right, components.sizeOf(i)));
+            parents[left] = node;
+            parents[right] = node;
+            nodeOf[components.find(i)] = node;
+            if (joinOrbs[i] == Double.POSITIVE_INFINITY) joinOrbs[i] = thresholds[p];
+            if (joinOrbs[j] == Double.POSITIVE_INFINITY) joinOrbs[j] = thresholds[p];
+        }
+        merges = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Сообщает устойчивость паттерна, образованного слиянием: на сколько градусов
+     * первичного орбиса он существует, пока не сольётся с другим.
+     * @param merge номер слияния.
+     * @return разность орбиса поглощающего слияния и орбиса этого,
+     * или бесконечность, если паттерн так и не поглощается.
+     */
+    public double getPersistence(int merge) {
+        int parent = parents[astras.size() + merge];
+        return parent < 0 ?
+                Double.POSITIVE_INFINITY :
+                merges.get(parent - astras.size()).orb() - merges.get(merge).orb();
+    }
+
+    /**
+     * Выдаёт астры, составляющие узел дерева.
+     * @param node номер узла: астры или слияния.
+     * @return астры узла в порядке их номеров.
+     */
+    public List<Astra> membersOf(int node) {
+        List<Astra> members = new ArrayList<>();
+        for (int v = 0; v < astras.size(); v++) {
+            int u = v;
+            while (u != node && u >= 0) u = parents[u];
+            if (u == node) members.add(astras.get(v));
+        }
+        return members;
+    }
+
+    /**
+     * Выделяет паттерны, существующие при указанном первичном орбисе,
+     * т.е. разрезает дерево на этом уровне.
+     * @param orb первичный орбис.
+     * @return астры каждого паттерна из двух и более астр, паттерны в порядке первой астры.
+     */
+    public List<List<Astra>> patternsAt(double orb) {
+        Map<Integer, List<Astra>> patterns = new LinkedHashMap<>();
+        for (int v = 0; v < astras.size(); v++) {
+            int node = v;
+            while (parents[node] >= 0 && merges.get(parents[node] - astras.size()).orb() < orb)
+                node = parents[node];
+            if (node >= astras.size())
+                patterns.computeIfAbsent(node, k -> new ArrayList<>()).add(astras.get(v));
+        }
+        return new ArrayList<>(patterns.values());
+    }
+
+    /**
+     * @return перечень слияний по возрастанию орбиса: орбис, состав нового паттерна
+     * и его устойчивость.
+     */
+    public String getDendrogramReport() {
+        List<Chart> heavens = astras.stream()
+                .map(Astra::getHeaven)
+                .distinct()
+                .toList();
+        StringBuilder report = new StringBuilder(Decorator.singularFrame(
+                "Слияние паттернов по %d гармонике для: %s".formatted(harmonic,
+                        heavens.stream().map(Chart::getName).collect(Collectors.joining(" и ")))));
+        for (int k = 0; k < merges.size(); k++) {
+            double persistence = getPersistence(k);
+            report.append("%6.2f°  %s  (%s)%n".formatted(
+                    merges.get(k).orb(),
+                    membersOf(astras.size() + k).stream()
+                            .map(a -> heavens.size() > 1 ? a.getSymbolWithOwner() : String.valueOf(a.getSymbol()))
+                            .collect(Collectors.joining(" ")),
+                    persistence == Double.POSITIVE_INFINITY ? "∞" : "%.2f°".formatted(persistence)));
+        }
+        return report.toString();
+    }
+}
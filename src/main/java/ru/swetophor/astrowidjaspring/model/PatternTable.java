@@ -78,8 +78,8 @@ public class PatternTable {
         }
         return sb.toString();
     }
-    /* TODO: требуется сделать настраиваемый отчёт по паттернам:
-         отсечки по номеру гармоники и/или силе, виды сортировки
+    /* TODO: требуется сделать настраиваемый отчёт по паттернам: виды сортировки
+         (отсечки по номеру гармоники и силе аспектов задаются запросом анализа Матрицы)
          а также — !! — нахождение узоров не только по одному числу,
          т.е. связанные сложным резонансом группы астр (могут быть сильными) */
 
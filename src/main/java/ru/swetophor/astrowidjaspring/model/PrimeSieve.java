@@ -0,0 +1,172 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import ru.swetophor.astrowidjaspring.config.Settings;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Решето наименьших простых делителей для чисел до некоторого предела.
+ * Разложение любого числа в пределах решета получается делением на его
+ * наименьший простой делитель, без пробных делений; готовые разложения
+ * запоминаются как неизменяемые списки и при повторных запросах выдаются те же.
+ * Простые числа отмечены в битовой маске, так что проверка, входит ли число
+ * в разложение другого, сводится к одному биту и одному делению.
+ * <p>
+ * Решето одно на всё приложение. Изначально оно строится до
+ * {@link Settings#getEdgeHarmonic() крайней гармоники}, а при запросе
+ * о большем числе заменяется решетом вдвое (или более) просторнее,
+ * которое перенимает уже готовые разложения. Расти решето может лишь
+ * до {@link #ceiling() потолка}, соразмерного крайней гармонике; числа выше
+ * потолка разлагаются пробным делением и не запоминаются, так что единичный
+ * запрос о большом числе не выделяет памяти на всё решето до него.
+ */
+final class PrimeSieve {
+    /**
+     * Во сколько раз потолок решета превышает крайнюю гармонику.
+     */
+    private static final int EDGE_MULTIPLE = 8;
+    /**
+     * Наименьший потолок решета, при любой крайней гармонике.
+     */
+    private static final int MIN_CEILING = 1 << 12;
+
+    private static volatile PrimeSieve shared;
+
+    /**
+     * До какого числа включительно построено решето.
+     */
+    private final int limit;
+    /**
+     * Наименьший простой делитель каждого числа от 2 до предела.
+     */
+    private final int[] smallestFactor;
+    /**
+     * Битовая маска простых чисел: число {@code p} простое, если установлен бит {@code p}.
+     */
+    private final long[] primes;
+    /**
+     * Готовые разложения, заполняемые при первом запросе. Списки неизменяемы,
+     * поэтому гонка при заполнении безвредна: в худшем случае одно и то же
+     * разложение будет построено дважды.
+     */
+    private final List<Integer>[] factorizations;
+
+    @SuppressWarnings("unchecked")
+    private PrimeSieve(int limit, PrimeSieve previous) {
+        this.limit = limit;
+        smallestFactor = new int[limit + 1];
+        primes = new long[(limit >>> 6) + 1];
+        factorizations = new List[limit + 1];
+        for (int n = 2; n <= limit; n++) {
+            if (smallestFactor[n] != 0) continue;
+            primes[n >>> 6] |= 1L << n;
+            for (long m = n; m <= limit; m += n)
+                if (smallestFactor[(int) m] == 0) smallestFactor[(int) m] = n;
+        }
+        factorizations[0] = List.of(0);
+        factorizations[1] = List.of(1);
+        if (previous != null)
+            System.arraycopy(previous.factorizations, 2, factorizations, 2, previous.limit - 1);
+    }
+
+    /**
+     * @return до какого числа решето может расти при текущей крайней гармонике.
+     */
+    static int ceiling() {
+        return (int) Math.max(MIN_CEILING, Math.min(Integer.MAX_VALUE - 8,
+                (long) EDGE_MULTIPLE * Settings.getEdgeHarmonic()));
+    }
+
+    /**
+     * Выдаёт общее решето, покрывающее указанное число, при необходимости расширяя его.
+     * @param number неотрицательное число, которое должно быть в пределах решета.
+     * @return решето с пределом не меньше указанного числа,
+     * или {@code null}, если число выше {@link #ceiling() потолка} решета.
+     */
+    private static PrimeSieve covering(int number) {
+        PrimeSieve sieve = shared;
+        if (sieve != null && sieve.limit >= number) return sieve;
+        int ceiling = ceiling();
+        if (number > ceiling) return null;
+        synchronized (PrimeSieve.class) {
+            sieve = shared;
+            if (sieve == null)
+                sieve = new PrimeSieve(Math.max(number, Math.max(Settings.getEdgeHarmonic(), 2)), null);
+            else if (sieve.limit < number)
+                sieve = new PrimeSieve((int) Math.min(ceiling, Math.max(number, 2L * sieve.limit)), sieve);
+            shared = sieve;
+            return sieve;
+        }
+    }
+
+    /**
+     * Разлагает число пробным делением, для чисел выше потолка решета.
+     * @param number число больше единицы.
+     * @return неизменяемый список простых множителей от большего к меньшему.
+     */
+    private static List<Integer> trialDivision(int number) {
+        List<Integer> factors = new ArrayList<>();
+        for (int divider = 2; divider <= number / divider; )
+            if (number % divider == 0) {
+                factors.add(divider);
+                number /= divider;
+            } else {
+                divider++;
+            }
+        factors.add(number);
+        factors.sort(Comparator.reverseOrder());
+        return List.copyOf(factors);
+    }
+
+    /**
+     * @param number число не меньше двух.
+     * @return простое ли число; в пределах решета — по его маске, выше — пробным делением.
+     */
+    private static boolean isPrime(int number) {
+        PrimeSieve sieve = covering(number);
+        if (sieve != null)
+            return (sieve.primes[number >>> 6] & 1L << number) != 0;
+        for (int divider = 2; divider <= number / divider; divider++)
+            if (number % divider == 0) return false;
+        return true;
+    }
+
+    /**
+     * Разлагает число на простые множители.
+     * @param number неотрицательное число.
+     * @return неизменяемый список простых множителей от большего к меньшему;
+     * для ноля {0}, для единицы {1}.
+     */
+    static List<Integer> factorize(int number) {
+        PrimeSieve sieve = covering(number);
+        if (sieve == null) return trialDivision(number);
+        List<Integer> factorization = sieve.factorizations[number];
+        if (factorization == null) {
+            int count = 0;
+            for (int rest = number; rest > 1; rest /= sieve.smallestFactor[rest])
+                count++;
+            Integer[] factors = new Integer[count];
+            for (int rest = number; rest > 1; rest /= sieve.smallestFactor[rest])
+                factors[--count] = sieve.smallestFactor[rest];
+            factorization = List.of(factors);
+            sieve.factorizations[number] = factorization;
+        }
+        return factorization;
+    }
+
+    /**
+     * Сообщает, входит ли число в разложение другого числа,
+     * как {@code factorize(number).contains(multiplier)}, но без обращения к списку.
+     * @param number     неотрицательное число, разложение которого проверяется.
+     * @param multiplier искомый множитель.
+     * @return {@code true}, если множитель — простой делитель числа
+     * (для ноля и единицы — если он равен самому числу).
+     */
+    static boolean hasMultiplier(int number, int multiplier) {
+        if (number <= 1) return number == multiplier;
+        if (multiplier < 2 || multiplier > number) return false;
+        return number % multiplier == 0 && isPrime(multiplier);
+    }
+}
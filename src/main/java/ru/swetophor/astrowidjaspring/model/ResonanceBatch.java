@@ -4,17 +4,16 @@ import lombok.Getter;
 import lombok.Setter;
 import ru.swetophor.astrowidjaspring.config.Settings;
 import ru.swetophor.astrowidjaspring.model.astro.Aspect;
+import ru.swetophor.astrowidjaspring.model.astro.AspectList;
 import ru.swetophor.astrowidjaspring.model.astro.Astra;
 import ru.swetophor.astrowidjaspring.model.chart.Chart;
 import ru.swetophor.astrowidjaspring.utils.CelestialMechanics;
+import ru.swetophor.astrowidjaspring.utils.HarmonicArcs;
 import ru.swetophor.astrowidjaspring.utils.Interpreter;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import static ru.swetophor.astrowidjaspring.model.Harmonics.findMultiplier;
-import static ru.swetophor.astrowidjaspring.utils.CelestialMechanics.getArcForHarmonic;
 import static ru.swetophor.astrowidjaspring.utils.Interpreter.ResonanceDescription;
 import static ru.swetophor.astrowidjaspring.utils.Mechanics.secondFormat;
 
@@ -50,9 +49,9 @@ public class ResonanceBatch {
      */
     private int ultimateHarmonic;
     /**
-     * Найденные в пределах орбиса аспекты по росту гармоники.
+     * Найденные в пределах орбиса аспекты по убыванию силы.
      */
-    private List<Aspect> aspects = new ArrayList<>();
+    private AspectList aspects = AspectList.EMPTY;
 
     /**
      * Набор ссылок на карты, к которым принадлежат астры,
@@ -81,18 +80,13 @@ public class ResonanceBatch {
         heavens.add(a.getHeaven());
         heavens.add(b.getHeaven());
         arc = CelestialMechanics.getArc(a, b);
-        // возможно, для более чем двойных карт брать ещё пропорционально меньше? наверное всё же нет
-        this.orb =
-                isSynastric() && Settings.isHalfOrbsForDoubles() ?
-                primalOrb / 2 :
-                primalOrb;
+        this.orb = effectiveOrb(a, b, primalOrb);
         this.ultimateHarmonic = ultimateHarmonic;
 
-        IntStream.rangeClosed(1, ultimateHarmonic).forEach(h -> {
-            double arcInHarmonic = getArcForHarmonic(a, b, h);
-            if (arcInHarmonic < orb && isNewSimple(h))
-                aspects.add(new Aspect(h, arcInHarmonic, arc, orb));
-        });
+        ResonanceBlock block = new ResonanceBlock(ultimateHarmonic);
+        block.openPair(0, 1, arc, orb);
+        collectAspects(arc, orb, ultimateHarmonic, block);
+        aspects = block.aspectsOf(0);
     }
 
     /**
@@ -106,33 +100,188 @@ public class ResonanceBatch {
     }
 
     /**
-     * Вспомогательный метод отсечения кратных гармоник при заполнении списка аспектов.
-     *
-     * @param aNewNumber число, которое проверяется на кратность уже найденным аспектам.
-     * @return {@code истинно}, если проверяемое число не кратно никакому из {@link #aspects уже найденных} (кроме 1),
-     * а также не является точным соединением, проходящим до данной гармоники. Следовательно,
-     * эту гармонику надо брать в {@link #aspects набор}. Если же {@code ложно}, брать её в набор не нужно.
+     * Конструктор резонанса из уже рассчитанных данных, используемый
+     * {@link ResonanceStore хранилищами} Матрицы.
+     * @param a                первая астра резонанса.
+     * @param b                вторая астра резонанса.
+     * @param arc              дуга между астрами.
+     * @param orb              орбис, с которым рассчитаны аспекты (уже сокращённый для синастрий).
+     * @param ultimateHarmonic до какой гармоники рассчитаны аспекты.
+     * @param aspects          рассчитанные аспекты по убыванию силы.
      */
-    private boolean isNewSimple(int aNewNumber) {
-        boolean isConjunction = false;
+    ResonanceBatch(Astra a, Astra b, double arc, double orb, int ultimateHarmonic, AspectList aspects) {
+        astra_1 = a;
+        astra_2 = b;
+        heavens.add(a.getHeaven());
+        heavens.add(b.getHeaven());
+        this.arc = arc;
+        this.orb = orb;
+        this.ultimateHarmonic = ultimateHarmonic;
+        this.aspects = aspects;
+    }
 
-        for (Aspect next : aspects) {
-            int aPreviousHarmonic = next.getNumeric();
+    /**
+     * Досчитывает аспекты в гармониках от прежней крайней (не включая) до указанной,
+     * не пересчитывая уже найденных: взятие гармоники зависит только от меньших гармоник,
+     * так что результат совпадает с расчётом до указанной гармоники с начала.
+     * Если указанная гармоника не выше прежней, ничего не делает.
+     * @param harmonic новая крайняя гармоника.
+     */
+    public void extendTo(int harmonic) {
+        if (harmonic <= ultimateHarmonic) return;
+        ResonanceBlock block = new ResonanceBlock(harmonic);
+        copyInto(0, 1, block);
+        ArcLookupTable.of(orb, harmonic).collectAspects(arc, ultimateHarmonic, block);
+        aspects = block.aspectsOf(0);
+        ultimateHarmonic = harmonic;
+    }
 
-            if (aPreviousHarmonic == 1)
-                isConjunction = true;
+    /**
+     * Выдаёт этот резонанс, каким он был бы при расчёте до меньшей крайней гармоники:
+     * с аспектами, резонансное число которых не превышает её, в прежнем порядке.
+     * @param harmonic крайняя гармоника представления.
+     * @return этот же объект, если указанная гармоника не ниже крайней;
+     * иначе новый резонанс с отобранными аспектами.
+     */
+    public ResonanceBatch limitedTo(int harmonic) {
+        if (harmonic >= ultimateHarmonic) return this;
+        int count = 0;
+        for (int a = 0; a < aspects.size(); a++)
+            if (aspects.numeric(a) <= harmonic) count++;
+        long[] codes = new long[count];
+        double[] clearances = new double[count];
+        for (int a = 0, k = 0; a < aspects.size(); a++)
+            if (aspects.numeric(a) <= harmonic) {
+                codes[k] = aspects.code(a);
+                clearances[k++] = aspects.clearance(a);
+            }
+        return new ResonanceBatch(astra_1, astra_2, arc, orb, harmonic,
+                count == 0 ? AspectList.EMPTY : new AspectList(codes, clearances, 0, count, orb));
+    }
 
-            if (aNewNumber % aPreviousHarmonic != 0)
-                continue;
+    /**
+     * Открывает в блоке пару с дугой, орбисом и аспектами этого резонанса.
+     * @param i     номер первой астры пары в блоке.
+     * @param j     номер второй астры пары в блоке.
+     * @param block блок, принимающий пару.
+     */
+    void copyInto(int i, int j, ResonanceBlock block) {
+        block.openPair(i, j, arc, orb);
+        for (int a = 0; a < aspects.size(); a++)
+            block.addAspect(aspects.numeric(a), aspects.multiplicity(a), aspects.clearance(a));
+    }
 
-            if (isConjunction &&
-                    arc > orb / aNewNumber &&
-                    findMultiplier(aNewNumber, arc, orb) == 1)
-                continue;
+    /**
+     * Определяет орбис, с которым считаются резонансы пары астр.
+     * @param a         первая астра.
+     * @param b         вторая астра.
+     * @param primalOrb первичный орбис для соединений.
+     * @return первичный орбис, ополовиненный для астр из разных карт,
+     * если это предусмотрено настройкой {@link Settings#isHalfOrbsForDoubles()}.
+     */
+    static double effectiveOrb(Astra a, Astra b, double primalOrb) {
+        // возможно, для более чем двойных карт брать ещё пропорционально меньше? наверное всё же нет
+        return !Astra.ofSameHeaven(a, b) && Settings.isHalfOrbsForDoubles() ?
+                primalOrb / 2 :
+                primalOrb;
+    }
+
+    /**
+     * Находит аспекты для дуги и дописывает их к последней открытой паре блока.
+     * Гармоники не перебираются подряд от 1 до указанной: кандидатов, в которых дуга
+     * может предстать соединением, выдаёт строка общей {@link ArcLookupTable таблицы},
+     * и только они проверяются, в порядке возрастания, тем же условием, что прежде каждая гармоника.
+     * @param arc              дуга между астрами.
+     * @param orb              орбис для соединений (уже сокращённый для синастрий).
+     * @param ultimateHarmonic до какой гармоники продолжать анализ.
+     * @param block            блок, последняя открытая пара которого принимает аспекты.
+     */
+    static void collectAspects(double arc, double orb, int ultimateHarmonic, ResonanceBlock block) {
+        ArcLookupTable.of(orb, ultimateHarmonic).collectAspects(arc, 0, block);
+    }
 
-            return false;
+    /**
+     * Проверяет гармоники-кандидаты в порядке возрастания и дописывает найденные
+     * аспекты к последней открытой паре блока. Кандидаты должны включать все
+     * гармоники, где дуга предстаёт соединением; лишние отсеиваются проверкой.
+     * @param arc        дуга между астрами.
+     * @param orb        орбис для соединений (уже сокращённый для синастрий).
+     * @param candidates массив, содержащий возрастающие гармоники-кандидаты.
+     * @param from       позиция первого кандидата в массиве.
+     * @param to         позиция, следующая за последним кандидатом.
+     * @param block      блок, последняя открытая пара которого принимает аспекты.
+     */
+    static void collectAspects(double arc, double orb, int[] candidates, int from, int to, ResonanceBlock block) {
+        double[] arcsInHarmonics = block.scratch(to - from);
+        HarmonicArcs.inHarmonics(arc, candidates, from, to, arcsInHarmonics);
+        collectAspects(arc, orb, candidates, from, to, arcsInHarmonics, block);
+    }
+
+    /**
+     * Проверяет гармоники-кандидаты, как {@link #collectAspects(double, double, int[], int, int, ResonanceBlock)},
+     * по уже вычисленным дугам в картах этих гармоник.
+     * @param arc             дуга между астрами.
+     * @param orb             орбис для соединений (уже сокращённый для синастрий).
+     * @param candidates      массив, содержащий возрастающие гармоники-кандидаты.
+     * @param from            позиция первого кандидата в массиве.
+     * @param to              позиция, следующая за последним кандидатом.
+     * @param arcsInHarmonics дуги в картах кандидатов, с начала массива.
+     * @param block           блок, последняя открытая пара которого принимает аспекты.
+     */
+    static void collectAspects(double arc, double orb, int[] candidates, int from, int to,
+                               double[] arcsInHarmonics, ResonanceBlock block) {
+        for (int c = from; c < to; c++) {
+            int h = candidates[c];
+            double arcInHarmonic = arcsInHarmonics[c - from];
+            if (arcInHarmonic < orb && isNewSimple(h, arc, orb, block))
+                block.addAspect(h, findMultiplier(h, arc, orb), arcInHarmonic);
         }
-        return true;
+    }
+
+    /**
+     * Проверяет гармоники-кандидаты, как {@link #collectAspects(double, double, int[], int, int, ResonanceBlock)},
+     * для дуги в целых угловых секундах: дуга в карте гармоники и попадание в орбис
+     * вычисляются точно, в целых числах, а в градусы переводятся только найденные зазоры.
+     * @param arcSeconds дуга между астрами в угловых секундах, от 0 до 648000.
+     * @param orb        орбис для соединений в градусах (уже сокращённый для синастрий).
+     * @param candidates массив, содержащий возрастающие гармоники-кандидаты.
+     * @param from       позиция первого кандидата в массиве.
+     * @param to         позиция, следующая за последним кандидатом.
+     * @param block      блок, последняя открытая пара которого принимает аспекты.
+     */
+    static void collectArcSecondAspects(int arcSeconds, double orb, int[] candidates, int from, int to,
+                                        ResonanceBlock block) {
+        double arc = CelestialMechanics.fromArcSeconds(arcSeconds);
+        double orbSeconds = orb * CelestialMechanics.SECONDS_PER_DEGREE;
+        for (int c = from; c < to; c++) {
+            int h = candidates[c];
+            int arcInHarmonic = CelestialMechanics.arcInHarmonic(arcSeconds, h);
+            if (arcInHarmonic < orbSeconds && isNewSimple(h, arc, orb, block))
+                block.addAspect(h, findMultiplier(h, arc, orb), CelestialMechanics.fromArcSeconds(arcInHarmonic));
+        }
+    }
+
+    /**
+     * Вспомогательный метод отсечения кратных гармоник при заполнении списка аспектов.
+     * Гармоники проверяются по возрастанию, так что соединение (гармоника 1), если оно
+     * есть, найдено первым и делит любое число. При соединении гармоника берётся, только
+     * если дуга вышла из её орбиса соединения и ближе всего к единичному аспекту;
+     * иначе — если её не делит ни одна из уже взятых гармоник, что блок сообщает
+     * по своей {@link ResonanceBlock#hasDivisorOf(int) решётке делителей}
+     * без перебора найденных аспектов.
+     *
+     * @param aNewNumber число, которое проверяется на кратность уже найденным аспектам.
+     * @param arc        дуга, для которой ищутся аспекты.
+     * @param orb        орбис для соединений.
+     * @param block      блок, последняя открытая пара которого накапливает аспекты.
+     * @return {@code истинно}, если проверяемое число не кратно никакому из уже найденных (кроме 1),
+     * а также не является точным соединением, проходящим до данной гармоники. Следовательно,
+     * эту гармонику надо брать в набор. Если же {@code ложно}, брать её в набор не нужно.
+     */
+    private static boolean isNewSimple(int aNewNumber, double arc, double orb, ResonanceBlock block) {
+        if (block.hasConjunction())
+            return arc > orb / aNewNumber && findMultiplier(aNewNumber, arc, orb) == 1;
+        return !block.hasDivisorOf(aNewNumber);
     }
 
     /**
@@ -184,12 +333,11 @@ public class ResonanceBatch {
     /**
      * Выдаёт список распознанных в этом пучке аспектов,
      * сортированный по убыванию силы (или росту зазора).
+     * Аспекты хранятся уже в этом порядке, так что сортировка не нужна.
      * @return  список {@link Aspect аспектов}.
      */
     private List<Aspect> getAspectsByStrength() {
-        return aspects.stream()
-                .sorted(Comparator.comparing(Aspect::getStrength).reversed())
-                .collect(Collectors.toList());
+        return aspects;
     }
 
     /**
@@ -203,17 +351,17 @@ public class ResonanceBatch {
 
         if (aspects.isEmpty())
             sb.append("Ни одного резонанса до %d при орбисе %s%n".formatted(ultimateHarmonic, orb));
-        aspects.stream()
-                .sorted(Comparator.comparing(Aspect::getStrength).reversed())
-                .forEach(aspect -> {
-                    sb.append(ResonanceDescription(aspect.getNumeric(), aspect.getMultiplicity()));
-                    sb.append("Резонанс %d/%d %s (%.0f%%) --- %.2f %n".formatted(
-                            aspect.getMultiplicity(),
-                            aspect.getNumeric(),
-                            aspect.strengthRating(),
-                            aspect.getStrength(),
-                            aspect.getStrength() / Math.pow(Math.log(aspect.getNumeric() + 1.0), 0.5)));
-        });
+        for (int a = 0; a < aspects.size(); a++) {
+            int numeric = aspects.numeric(a), multiplicity = aspects.multiplicity(a);
+            double strength = aspects.strength(a);
+            sb.append(ResonanceDescription(numeric, multiplicity));
+            sb.append("Резонанс %d/%d %s (%.0f%%) --- %.2f %n".formatted(
+                    multiplicity,
+                    numeric,
+                    aspects.precisionClass(a).getRating(),
+                    strength,
+                    strength / Math.pow(Math.log(numeric + 1.0), 0.5)));
+        }
         return sb.toString();
     }
 
@@ -225,8 +373,10 @@ public class ResonanceBatch {
      * для этого резонанса, является кратным запрашиваемому числу, {@code false}в ином случае.
      */
     public boolean hasResonanceElement(int harmonic) {
-        return aspects.stream()
-                .anyMatch(a -> a.hasMultiplier(harmonic) || a.getNumeric() == harmonic);
+        for (int a = 0; a < aspects.size(); a++)
+            if (aspects.numeric(a) == harmonic || Harmonics.isMultiplied(aspects.numeric(a), harmonic))
+                return true;
+        return false;
     }
 
     /**
@@ -238,8 +388,9 @@ public class ResonanceBatch {
      * но для harmonic = 6 имеющий его объект резонанса вернёт {@code false}.
      */
     public boolean hasExactHarmonic(int harmonic) {
-        return aspects.stream()
-                .anyMatch(a -> a.getNumeric() == harmonic);
+        for (int a = 0; a < aspects.size(); a++)
+            if (aspects.numeric(a) == harmonic) return true;
+        return false;
     }
 
     /**
@@ -249,8 +400,10 @@ public class ResonanceBatch {
      * указанной гармонике, как определяется методом {@link Aspect#hasResonance(int) hasResonance()}.
      */
     public boolean hasHarmonicResonance(int harmonic) {
-        return aspects.stream()
-                .anyMatch(a -> a.hasResonance(harmonic));
+        if (harmonic <= 0) throw new IllegalArgumentException();
+        for (int a = 0; a < aspects.size(); a++)
+            if (aspects.hasResonance(a, harmonic)) return true;
+        return false;
     }
 
     /**
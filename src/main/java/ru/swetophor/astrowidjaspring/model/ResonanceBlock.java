@@ -0,0 +1,269 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import ru.swetophor.astrowidjaspring.model.astro.Aspect;
+import ru.swetophor.astrowidjaspring.model.astro.AspectList;
+
+import java.util.Arrays;
+
+/**
+ * Накопитель результатов расчёта резонансов для нескольких пар астр.
+ * Заполняется при построении {@link AstroMatrix Матрицы} и передаётся
+ * в {@link ResonanceStore хранилище} целиком, без создания объектов
+ * {@link ResonanceBatch} и {@link Aspect} для каждой пары.
+ * Аспекты всех пар блока лежат подряд в общих примитивных массивах,
+ * для каждой пары запоминается конец её участка.
+ */
+final class ResonanceBlock {
+    /**
+     * До какой гармоники рассчитывались резонансы пар блока.
+     */
+    private final int ultimateHarmonic;
+    /**
+     * Сколько пар сейчас в блоке.
+     */
+    private int pairs;
+    /**
+     * Номера первой и второй астры каждой пары в объединённом списке астр Матрицы.
+     */
+    private int[] firsts = new int[16], seconds = new int[16];
+    /**
+     * Дуги и орбисы, с которыми рассчитаны пары.
+     */
+    private double[] arcs = new double[16], orbs = new double[16];
+    /**
+     * Номер следующего за последним аспекта каждой пары в общих массивах аспектов.
+     */
+    private int[] ends = new int[16];
+    /**
+     * Сколько всего аспектов в блоке.
+     */
+    private int aspects;
+    /**
+     * {@link AspectList#encode(int, int, int) Коды} и зазоры аспектов всех пар блока.
+     */
+    private long[] codes = new long[32];
+    private double[] clearances = new double[32];
+    /**
+     * Решётка делителей последней открытой пары: бит {@code h} установлен,
+     * если {@code h} кратна резонансному числу одного из уже добавленных к паре аспектов.
+     */
+    private final long[] divided;
+    /**
+     * Добавлено ли к последней открытой паре соединение (аспект гармоники 1).
+     */
+    private boolean conjunction;
+    /**
+     * Рабочий массив для промежуточных расчётов пары, см. {@link #scratch(int)}.
+     */
+    private double[] scratch = new double[32];
+
+    ResonanceBlock(int ultimateHarmonic) {
+        this.ultimateHarmonic = ultimateHarmonic;
+        divided = new long[ResonanceStore.maskWords(ultimateHarmonic)];
+    }
+
+    /**
+     * Опустошает блок для повторного использования.
+     */
+    void clear() {
+        pairs = 0;
+        aspects = 0;
+    }
+
+    /**
+     * Начинает в блоке новую пару; аспекты, добавляемые далее,
+     * относятся к ней.
+     * @param i   номер первой астры пары.
+     * @param j   номер второй астры пары.
+     * @param arc дуга между астрами.
+     * @param orb орбис, с которым рассчитываются резонансы пары.
+     */
+    void openPair(int i, int j, double arc, double orb) {
+        if (pairs == firsts.length) {
+            int capacity = pairs * 2;
+            firsts = Arrays.copyOf(firsts, capacity);
+            seconds = Arrays.copyOf(seconds, capacity);
+            arcs = Arrays.copyOf(arcs, capacity);
+            orbs = Arrays.copyOf(orbs, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        firsts[pairs] = i;
+        seconds[pairs] = j;
+        arcs[pairs] = arc;
+        orbs[pairs] = orb;
+        ends[pairs] = aspects;
+        pairs++;
+        Arrays.fill(divided, 0L);
+        conjunction = false;
+    }
+
+    /**
+     * Добавляет аспект к последней открытой паре.
+     * @param numeric      резонансное число аспекта.
+     * @param multiplicity множитель аспекта.
+     * @param clearance    зазор аспекта в карте гармоники.
+     */
+    void addAspect(int numeric, int multiplicity, double clearance) {
+        if (aspects == codes.length) {
+            int capacity = aspects * 2;
+            codes = Arrays.copyOf(codes, capacity);
+            clearances = Arrays.copyOf(clearances, capacity);
+        }
+        codes[aspects] = AspectList.encode(numeric, multiplicity, clearance, orbs[pairs - 1]);
+        clearances[aspects] = clearance;
+        aspects++;
+        ends[pairs - 1] = aspects;
+        if (numeric == 1) conjunction = true;
+        for (int h = numeric; h <= ultimateHarmonic; h += numeric)
+            divided[h >>> 6] |= 1L << h;
+    }
+
+    /**
+     * Оставляет у последней открытой пары только аспекты, которые принимает
+     * {@link AnalysisRequest запрос анализа}. Вызывается, когда аспекты пары
+     * уже отобраны, так что на отбор фильтр не влияет; после него пара не дополняется.
+     * @param request запрос, по которому строится Матрица.
+     */
+    void retainAspects(AnalysisRequest request) {
+        int kept = aspectsFrom(pairs - 1);
+        for (int a = kept; a < aspects; a++)
+            if (request.admits(codes[a], clearances[a], orbs[pairs - 1])) {
+                codes[kept] = codes[a];
+                clearances[kept++] = clearances[a];
+            }
+        aspects = kept;
+        ends[pairs - 1] = kept;
+    }
+
+    /**
+     * Выдаёт рабочий массив блока, переиспользуемый от пары к паре,
+     * чтобы расчёт пары не создавал временных массивов.
+     * @param size сколько элементов нужно.
+     * @return массив не короче указанного; его содержимое не определено.
+     */
+    double[] scratch(int size) {
+        if (scratch.length < size)
+            scratch = new double[Math.max(size, scratch.length * 2)];
+        return scratch;
+    }
+
+    /**
+     * @return добавлено ли к последней открытой паре соединение.
+     */
+    boolean hasConjunction() {
+        return conjunction;
+    }
+
+    /**
+     * Сообщает, делится ли число на резонансное число какого-либо из аспектов,
+     * уже добавленных к последней открытой паре.
+     * @param harmonic проверяемая гармоника, не выше крайней.
+     * @return {@code true}, если среди аспектов пары есть аспект гармоники-делителя.
+     */
+    boolean hasDivisorOf(int harmonic) {
+        return (divided[harmonic >>> 6] & 1L << harmonic) != 0;
+    }
+
+    int ultimateHarmonic() {
+        return ultimateHarmonic;
+    }
+
+    int size() {
+        return pairs;
+    }
+
+    int first(int pair) {
+        return firsts[pair];
+    }
+
+    int second(int pair) {
+        return seconds[pair];
+    }
+
+    double arc(int pair) {
+        return arcs[pair];
+    }
+
+    double orb(int pair) {
+        return orbs[pair];
+    }
+
+    /**
+     * @param pair номер пары в блоке.
+     * @return номер первого аспекта пары в общих массивах аспектов.
+     */
+    int aspectsFrom(int pair) {
+        return pair == 0 ? 0 : ends[pair - 1];
+    }
+
+    /**
+     * @param pair номер пары в блоке.
+     * @return номер, следующий за последним аспектом пары в общих массивах аспектов.
+     */
+    int aspectsTo(int pair) {
+        return ends[pair];
+    }
+
+    long code(int aspect) {
+        return codes[aspect];
+    }
+
+    int numeric(int aspect) {
+        return AspectList.numericOf(codes[aspect]);
+    }
+
+    int multiplicity(int aspect) {
+        return AspectList.multiplicityOf(codes[aspect]);
+    }
+
+    double clearance(int aspect) {
+        return clearances[aspect];
+    }
+
+    /**
+     * Отмечает в битовой маске гармоники, в которых пара предстаёт соединением,
+     * т.е. для которых хоть один её аспект {@link Aspect#hasResonance(int) резонирует}:
+     * кратные резонансному числу аспекта вплоть до его глубины.
+     * Гармонике {@code h} соответствует бит {@code h % 64} в слове {@code offset + h / 64}.
+     * @param pair   номер пары в блоке.
+     * @param masks  массив, в который пишется маска.
+     * @param offset номер первого слова маски пары в массиве.
+     */
+    void markResonances(int pair, long[] masks, int offset) {
+        for (int a = aspectsFrom(pair); a < aspectsTo(pair); a++) {
+            int numeric = AspectList.numericOf(codes[a]), depth = AspectList.depthOf(codes[a]);
+            for (int h = numeric, m = 1; h <= ultimateHarmonic && m <= depth; h += numeric, m++)
+                masks[offset + (h >>> 6)] |= 1L << h;
+        }
+    }
+
+    /**
+     * Копирует аспекты указанной пары блока в отдельный упакованный список.
+     * @param pair номер пары в блоке.
+     * @return список {@link Aspect аспектов} пары по убыванию силы.
+     */
+    AspectList aspectsOf(int pair) {
+        int from = aspectsFrom(pair), to = aspectsTo(pair);
+        if (from == to) return AspectList.EMPTY;
+        long[] pairCodes = Arrays.copyOfRange(codes, from, to);
+        double[] pairClearances = Arrays.copyOfRange(clearances, from, to);
+        AspectList.sortByStrength(pairCodes, pairClearances, 0, to - from);
+        return new AspectList(pairCodes, pairClearances, 0, to - from, orbs[pair]);
+    }
+
+    /**
+     * Переносит аспекты пары блока в пул хранилища, упорядочивая их по убыванию силы.
+     * @param pair       номер пары в блоке.
+     * @param codes      коды аспектов пула.
+     * @param clearances зазоры аспектов пула.
+     * @param position   с какого места пула записывать.
+     * @return место пула, следующее за последним записанным аспектом.
+     */
+    int copyAspects(int pair, long[] codes, double[] clearances, int position) {
+        int from = aspectsFrom(pair), count = aspectsTo(pair) - from;
+        System.arraycopy(this.codes, from, codes, position, count);
+        System.arraycopy(this.clearances, from, clearances, position, count);
+        AspectList.sortByStrength(codes, clearances, position, position + count);
+        return position + count;
+    }
+}
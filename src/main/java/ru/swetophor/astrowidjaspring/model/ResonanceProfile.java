@@ -0,0 +1,73 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import ru.swetophor.astrowidjaspring.config.Settings;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.utils.CelestialMechanics;
+
+/**
+ * Набор настроек, от которых зависят рассчитанные резонансы:
+ * первичный орбис, крайняя гармоника, сокращение орбиса для астр разных карт
+ * и точность, с которой берутся позиции астр.
+ * Две Матрицы с одинаковым профилем дают для одинаково расположенных астр
+ * одинаковые аспекты, поэтому профиль служит ключом для всего, что можно
+ * рассчитать заранее и разделить между Матрицами.
+ * @param primalOrb          первичный орбис для соединений.
+ * @param edgeHarmonic       до какой гармоники рассчитываются резонансы.
+ * @param halfOrbsForDoubles сокращается ли вдвое орбис для астр из разных карт.
+ * @param arcSeconds         округляются ли позиции астр до угловой секунды
+ *                           с расчётом дуг в целых числах.
+ */
+public record ResonanceProfile(double primalOrb, int edgeHarmonic, boolean halfOrbsForDoubles,
+                               boolean arcSeconds) {
+
+    /**
+     * @return профиль, заданный текущими {@link Settings настройками}.
+     */
+    public static ResonanceProfile current() {
+        return new ResonanceProfile(Settings.getPrimalOrb(),
+                Settings.getEdgeHarmonic(),
+                Settings.isHalfOrbsForDoubles(),
+                Settings.isArcSecondMode());
+    }
+
+    /**
+     * @param harmonic другая крайняя гармоника.
+     * @return профиль с теми же настройками, но указанной крайней гармоникой.
+     */
+    public ResonanceProfile withEdgeHarmonic(int harmonic) {
+        return new ResonanceProfile(primalOrb, harmonic, halfOrbsForDoubles, arcSeconds);
+    }
+
+    /**
+     * Определяет орбис, с которым считаются резонансы пары астр.
+     * @param sameHeaven принадлежат ли астры одной карте.
+     * @return первичный орбис, ополовиненный для астр из разных карт,
+     * если это предусмотрено профилем.
+     */
+    public double orbFor(boolean sameHeaven) {
+        return !sameHeaven && halfOrbsForDoubles ?
+                primalOrb / 2 :
+                primalOrb;
+    }
+
+    /**
+     * @param a первая астра.
+     * @param b вторая астра.
+     * @return орбис, с которым считаются резонансы этой пары, как {@link #orbFor(boolean)}.
+     */
+    public double orbFor(Astra a, Astra b) {
+        return orbFor(Astra.ofSameHeaven(a, b));
+    }
+
+    /**
+     * @param a первая астра.
+     * @param b вторая астра.
+     * @return дуга между астрами в градусах, в режиме угловых секунд —
+     * между позициями, округлёнными до секунды.
+     */
+    public double arcBetween(Astra a, Astra b) {
+        return arcSeconds ?
+                CelestialMechanics.fromArcSeconds(CelestialMechanics.arcBetween(a.getArcSeconds(), b.getArcSeconds())) :
+                CelestialMechanics.getArc(a, b);
+    }
+}
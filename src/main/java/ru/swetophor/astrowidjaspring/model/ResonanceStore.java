@@ -0,0 +1,129 @@
+package ru.swetophor.astrowidjaspring.model;
+
+/**
+ * Хранилище рассчитанных резонансов для всех пар астр {@link AstroMatrix Матрицы}.
+ * Пары адресуются номерами астр в объединённом списке, первый номер меньше второго;
+ * внутри хранилища они раскладываются по треугольнику "косынкой":
+ * [0][1]→[0][2]→…→[0][N-1]→[1][2]→…→[N-2][N-1].
+ * Хранилища, держащие память вне кучи, освобождают её при {@link #close() закрытии}.
+ * <p>
+ * Чтение может идти одновременно с записью других пар (так рассчитывается
+ * {@link MatrixBuild#LAZY ленивая} Матрица): хранилище, перекладывающее при записи
+ * свои массивы, читает их под тем же замком, под которым пишет.
+ */
+interface ResonanceStore extends AutoCloseable {
+
+    /**
+     * Сохраняет результаты расчёта всех пар блока.
+     * Если какая-то пара уже была сохранена, её данные заменяются.
+     * Может вызываться одновременно из нескольких потоков
+     * для блоков, не пересекающихся по парам.
+     * @param block блок с рассчитанными парами.
+     */
+    void write(ResonanceBlock block);
+
+    /**
+     * Выдаёт пучок резонансов для пары астр.
+     * @param i номер первой астры пары.
+     * @param j номер второй астры пары, больший первого.
+     * @return объект резонанса для указанной пары.
+     */
+    ResonanceBatch read(int i, int j);
+
+    /**
+     * Сообщает, что пара предстаёт соединением в указанной гармонике,
+     * как это определяет {@link ResonanceBatch#hasHarmonicResonance(int)}, но по заранее
+     * рассчитанной битовой маске пары, без перебора её аспектов.
+     * @param i        номер первой астры пары.
+     * @param j        номер второй астры пары, больший первого.
+     * @param harmonic проверяемая гармоника.
+     * @return {@code true}, если астры пары связаны по этой гармонике.
+     */
+    boolean resonates(int i, int j, int harmonic);
+
+    /**
+     * Копирует битовую маску пары, по которой отвечает {@link #resonates(int, int, int)}:
+     * бит {@code h} установлен, если пара связана по гармонике {@code h}.
+     * @param i      номер первой астры пары.
+     * @param j      номер второй астры пары, больший первого.
+     * @param out    массив, куда пишется маска.
+     * @param offset позиция, с которой пишутся {@link #maskWords(int)} слов маски.
+     */
+    void copyMask(int i, int j, long[] out, int offset);
+
+    /**
+     * Находит ближайшую пару, которую хранилище содержит, начиная с указанной.
+     * Плотные хранилища содержат все пары; разреженное — только пары с аспектами,
+     * так что обход по этому методу пропускает пустые пары, не касаясь их.
+     * @param fromPair номер пары, с которой начинается поиск.
+     * @return номер найденной пары в треугольной раскладке, или -1, если дальше пар нет.
+     */
+    int nextStored(int fromPair);
+
+    /**
+     * Освобождает ресурсы хранилища, не управляемые сборщиком мусора.
+     * Хранилищам в куче освобождать нечего.
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * Определяет номер пары в треугольной раскладке.
+     * @param i номер первой астры.
+     * @param j номер второй астры, больший первого.
+     * @param n общее количество астр.
+     * @return порядковый номер пары при обходе треугольника "косынкой".
+     * @throws ArithmeticException если номер не помещается в {@code int}.
+     */
+    static int pairIndex(int i, int j, int n) {
+        return Math.toIntExact((long) i * (2L * n - i - 1) / 2 + (j - i - 1));
+    }
+
+    /**
+     * Определяет, в каком ряду треугольной раскладки лежит пара.
+     * @param pair номер пары при обходе треугольника.
+     * @param n    общее количество астр.
+     * @return номер первой астры пары с указанным номером.
+     */
+    static int rowOf(int pair, int n) {
+        double b = 2.0 * n - 1;
+        int i = (int) ((b - Math.sqrt(b * b - 8.0 * pair)) / 2);
+        while (i > 0 && pairIndex(i, i + 1, n) > pair) i--;
+        while (i < n - 2 && pairIndex(i + 1, i + 2, n) <= pair) i++;
+        return i;
+    }
+
+    /**
+     * @param n количество астр.
+     * @return количество возможных пар между ними, {@code N * (N - 1) / 2}.
+     * @throws ArithmeticException если пар больше, чем помещается в {@code int},
+     *                             т.е. астр больше 65536.
+     */
+    static int pairCount(int n) {
+        return Math.toIntExact((long) n * (n - 1) / 2);
+    }
+
+    /**
+     * @param ultimateHarmonic до какой гармоники рассчитываются резонансы.
+     * @return сколько слов {@code long} занимает гармоническая маска одной пары,
+     * где гармонике {@code h} отвечает бит {@code h}.
+     */
+    static int maskWords(int ultimateHarmonic) {
+        return (ultimateHarmonic >>> 6) + 1;
+    }
+
+    /**
+     * Проверяет бит гармоники в маске пары.
+     * @param masks    маски всех пар.
+     * @param offset   номер первого слова маски пары.
+     * @param harmonic проверяемая гармоника.
+     * @param ultimateHarmonic до какой гармоники рассчитаны маски.
+     * @return {@code true}, если бит гармоники установлен.
+     */
+    static boolean testMask(long[] masks, int offset, int harmonic, int ultimateHarmonic) {
+        if (harmonic <= 0) throw new IllegalArgumentException();
+        return harmonic <= ultimateHarmonic
+                && (masks[offset + (harmonic >>> 6)] & 1L << harmonic) != 0;
+    }
+}
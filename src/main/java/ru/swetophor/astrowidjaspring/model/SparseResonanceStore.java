@@ -0,0 +1,214 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import ru.swetophor.astrowidjaspring.model.astro.AspectList;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Разреженное хранилище резонансов: записываются только пары, у которых
+ * нашёлся хотя бы один аспект. Такие пары получают запись в плоских примитивных
+ * массивах (как в {@link PackedResonanceStore}), а номер записи находится
+ * по номеру пары через хеш-таблицу с открытой адресацией.
+ * Набор непустых пар дополнительно отмечен битами, так что обход в порядке
+ * треугольника затрагивает только их.
+ * Пара без аспектов при обращении восстанавливается по самим астрам:
+ * дуга вычисляется заново, орбис определяется так же, как при расчёте.
+ * Запись может перестроить хеш-таблицу и переложить массивы записей,
+ * поэтому всё хранилище читается под тем же замком, под которым пишется.
+ */
+final class SparseResonanceStore implements ResonanceStore {
+    private final List<Astra> astras;
+    private final int ultimateHarmonic;
+    /**
+     * Профиль Матрицы, по которому восстанавливаются дуга и орбис пар без аспектов.
+     */
+    private final ResonanceProfile profile;
+    private final int words;
+    /**
+     * Номера пар, имеющих аспекты.
+     */
+    private final BitSet present;
+    /**
+     * Хеш-таблица: номер пары (или -1 для пустой ячейки) и номер её записи.
+     */
+    private int[] keys, entryOf;
+    /**
+     * Сколько записей создано.
+     */
+    private int entries;
+    /**
+     * Данные записей: дуга, орбис, участок в пуле аспектов и гармоническая маска.
+     */
+    private double[] arcs, orbs;
+    private int[] starts, counts;
+    private long[] masks;
+    /**
+     * Пул аспектов: {@link AspectList#encode(int, int, int) коды} и зазоры;
+     * участок каждой пары упорядочен по убыванию силы.
+     */
+    private long[] codes;
+    private double[] clearances;
+    private int poolSize;
+    /**
+     * Сколько места в пуле занято устаревшими участками пар, записанных повторно.
+     */
+    private int garbage;
+
+    SparseResonanceStore(List<Astra> astras, ResonanceProfile profile) {
+        this.astras = astras;
+        this.ultimateHarmonic = profile.edgeHarmonic();
+        this.profile = profile;
+        words = ResonanceStore.maskWords(ultimateHarmonic);
+        present = new BitSet(ResonanceStore.pairCount(astras.size()));
+        keys = new int[64];
+        Arrays.fill(keys, -1);
+        entryOf = new int[64];
+        arcs = new double[16];
+        orbs = new double[16];
+        starts = new int[16];
+        counts = new int[16];
+        masks = new long[16 * words];
+        codes = new long[32];
+        clearances = new double[32];
+    }
+
+    @Override
+    public synchronized void write(ResonanceBlock block) {
+        for (int k = 0; k < block.size(); k++) {
+            int p = ResonanceStore.pairIndex(block.first(k), block.second(k), astras.size());
+            int from = block.aspectsFrom(k), to = block.aspectsTo(k);
+            int e = find(p);
+            if (e == -1) {
+                if (from == to) continue;
+                e = newEntry(p);
+            } else {
+                garbage += counts[e];
+            }
+            ensurePool(poolSize + to - from);
+            arcs[e] = block.arc(k);
+            orbs[e] = block.orb(k);
+            starts[e] = poolSize;
+            counts[e] = to - from;
+            Arrays.fill(masks, e * words, (e + 1) * words, 0L);
+            block.markResonances(k, masks, e * words);
+            poolSize = block.copyAspects(k, codes, clearances, poolSize);
+            present.set(p, to > from);
+        }
+        if (garbage > poolSize / 2) compact();
+    }
+
+    @Override
+    public synchronized ResonanceBatch read(int i, int j) {
+        Astra a = astras.get(i), b = astras.get(j);
+        int e = find(ResonanceStore.pairIndex(i, j, astras.size()));
+        if (e == -1)
+            return new ResonanceBatch(a, b, profile.arcBetween(a, b), profile.orbFor(a, b),
+                    ultimateHarmonic, AspectList.EMPTY);
+        return new ResonanceBatch(a, b, arcs[e], orbs[e], ultimateHarmonic,
+                new AspectList(codes, clearances, starts[e], starts[e] + counts[e], orbs[e]));
+    }
+
+    @Override
+    public synchronized boolean resonates(int i, int j, int harmonic) {
+        int e = find(ResonanceStore.pairIndex(i, j, astras.size()));
+        if (e == -1) {
+            if (harmonic <= 0) throw new IllegalArgumentException();
+            return false;
+        }
+        return ResonanceStore.testMask(masks, e * words, harmonic, ultimateHarmonic);
+    }
+
+    @Override
+    public synchronized void copyMask(int i, int j, long[] out, int offset) {
+        int e = find(ResonanceStore.pairIndex(i, j, astras.size()));
+        if (e == -1)
+            Arrays.fill(out, offset, offset + words, 0L);
+        else
+            System.arraycopy(masks, e * words, out, offset, words);
+    }
+
+    @Override
+    public synchronized int nextStored(int fromPair) {
+        return present.nextSetBit(fromPair);
+    }
+
+    /**
+     * @param pair номер пары.
+     * @return номер записи пары, или -1, если пара не записана.
+     */
+    private int find(int pair) {
+        int mask = keys.length - 1;
+        for (int cell = mix(pair) & mask; keys[cell] != -1; cell = (cell + 1) & mask)
+            if (keys[cell] == pair) return entryOf[cell];
+        return -1;
+    }
+
+    private int newEntry(int pair) {
+        if (entries == arcs.length) {
+            int capacity = entries + (entries >> 1);
+            arcs = Arrays.copyOf(arcs, capacity);
+            orbs = Arrays.copyOf(orbs, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            masks = Arrays.copyOf(masks, capacity * words);
+        }
+        if ((entries + 1) * 2 > keys.length) rehash(keys.length * 2);
+        place(pair, entries);
+        return entries++;
+    }
+
+    private void place(int pair, int entry) {
+        int mask = keys.length - 1;
+        int cell = mix(pair) & mask;
+        while (keys[cell] != -1) cell = (cell + 1) & mask;
+        keys[cell] = pair;
+        entryOf[cell] = entry;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys, oldEntries = entryOf;
+        keys = new int[capacity];
+        Arrays.fill(keys, -1);
+        entryOf = new int[capacity];
+        for (int cell = 0; cell < oldKeys.length; cell++)
+            if (oldKeys[cell] != -1)
+                place(oldKeys[cell], oldEntries[cell]);
+    }
+
+    private static int mix(int pair) {
+        int h = pair * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Переписывает пул, выбрасывая устаревшие участки, накопившиеся
+     * при повторной записи пар.
+     */
+    private void compact() {
+        int size = poolSize - garbage;
+        int capacity = Math.max(size + (size >> 1), 32);
+        long[] packedCodes = new long[capacity];
+        double[] packedClearances = new double[capacity];
+        int position = 0;
+        for (int e = 0; e < entries; e++) {
+            System.arraycopy(codes, starts[e], packedCodes, position, counts[e]);
+            System.arraycopy(clearances, starts[e], packedClearances, position, counts[e]);
+            starts[e] = position;
+            position += counts[e];
+        }
+        codes = packedCodes;
+        clearances = packedClearances;
+        poolSize = position;
+        garbage = 0;
+    }
+
+    private void ensurePool(int required) {
+        if (required <= codes.length) return;
+        int capacity = Math.max(required, codes.length + (codes.length >> 1));
+        codes = Arrays.copyOf(codes, capacity);
+        clearances = Arrays.copyOf(clearances, capacity);
+    }
+}
@@ -6,9 +6,7 @@ import ru.swetophor.astrowidjaspring.utils.CelestialMechanics;
 
 import java.util.List;
 
-import static java.lang.Math.floor;
 import static ru.swetophor.astrowidjaspring.model.Harmonics.findMultiplier;
-import static ru.swetophor.astrowidjaspring.model.astro.PrecisionClass.*;
 import static ru.swetophor.astrowidjaspring.utils.Mechanics.secondFormat;
 
 /**
@@ -17,17 +15,77 @@ import static ru.swetophor.astrowidjaspring.utils.Mechanics.secondFormat;
  * (основное гармоническое число и множитель повторения кратности)
  * и степенью точности (добротности) резонанса, определяемой как близость
  * реального небесного расстояния к дуге точного аспекта.
+ * Сам объект лишь представляет упакованный {@link AspectList код аспекта}
+ * с его зазором; сила и класс точности вычисляются при обращении.
  */
-@Getter
 public class Aspect {
+    /**
+     * Код аспекта: резонансное число, множитель и глубина в битовых полях
+     * (см. {@link AspectList#encode(int, int, int)}).
+     */
+    private final long code;
+
+    /**
+     * Разность фактической дуги между астрами с дугой чистого аспекта,
+     * экзакта, вычисляемой как {@code (360° / гармоника) * множитель}.
+     * Т.е. эффективный орбис аспекта.
+     */
+    @Getter
+    private final double clearance;
+
+    /**
+     * Первичный орб для соединений, с которым определён аспект.
+     */
+    private final double orb;
+
+    /**
+     * Конструктор аспекта, т.е. одного из резонансов в дуге.
+     * @param numeric      гармоника, т.е. кратность дуги Кругу.
+     * @param clearance     эффективный орбис в карте гармоники.
+     * @param fromArc   реальная дуга, в которой распознан этот резонанс.
+     * @param orb   первичный орб для соединений, используемый при определении резонансов.
+     *              При этом если используется сокращение орба для синастрий (по умолчанию),
+     *              сюда передаётся уже сокращённое значение.
+     */
+    public Aspect(int numeric, double clearance, double fromArc, double orb) {
+        this(numeric, findMultiplier(numeric, fromArc, orb), clearance, orb);
+    }
+
+    /**
+     * Конструктор аспекта с уже известным множителем.
+     * @param numeric      гармоника, т.е. кратность дуги Кругу.
+     * @param multiplicity множитель дальности аспекта.
+     * @param clearance    эффективный орбис в карте гармоники.
+     * @param orb          первичный орб для соединений, использованный при определении резонанса.
+     */
+    public Aspect(int numeric, int multiplicity, double clearance, double orb) {
+        this(AspectList.encode(numeric, multiplicity, clearance, orb), clearance, orb);
+    }
+
+    /**
+     * Представление аспекта, упакованного в {@link AspectList}.
+     * @param code      код аспекта.
+     * @param clearance эффективный орбис в карте гармоники.
+     * @param orb       первичный орб для соединений, использованный при определении резонанса.
+     */
+    Aspect(long code, double clearance, double orb) {
+        this.code = code;
+        this.clearance = clearance;
+        this.orb = orb;
+    }
+
     /**
      * Гармоника, в которой аспект предстаёт соединением.
      * Т.е. число, на которое делится Круг, чтобы получить
      * дугу единичного резонанса для данной гармоники.
      * Иначе говоря, резонансное число аспекта, или номер гармоники.
      * Например, дугам в 45° и 135° соответствует резонансное число 8.
+     * @return резонансное число аспекта.
      */
-    private final int numeric;
+    public int getNumeric() {
+        return AspectList.numericOf(code);
+    }
+
     /**
      * Множитель дальности, или повторитель кратности. Т.е. то число, на которое
      * нужно умножить дугу единичного резонанса этой гармоники, чтоб получить
@@ -35,23 +93,22 @@ public class Aspect {
      * Например, дуга в 45° имеет множитель 1, а дуга в 135° — множитель 3.
      * Резонансное число не должно быть кратно множителю,
      * например вместо аспекта 2/8 берётся аспект 1/4.
+     * @return множитель аспекта.
      */
-    private final int multiplicity;
-
-    /**
-     * Разность фактической дуги между астрами с дугой чистого аспекта,
-     * экзакта, вычисляемой как {@code (360° / гармоника) * множитель}.
-     * Т.е. эффективный орбис аспекта.
-     */
-    private final double clearance;
+    public int getMultiplicity() {
+        return AspectList.multiplicityOf(code);
+    }
 
     /**
      * Эффективный орбис аспекта, выраженный в %-ах, где 100% означает полное
      * совпадение реальной дуги с математическим аспектом (экзакт, эффективный орбис 0°),
      * а 0% означает совпадение эффективного орбиса с предельным для данной гармоники.
      * Иначе говоря, точность аспекта, выраженная в %-ах.
+     * @return сила аспекта в %-ах.
      */
-    private final double strength;
+    public double getStrength() {
+        return CelestialMechanics.calculateStrength(orb, clearance);
+    }
 
     /**
      * Глубина аспекта, т.е. его точность, выраженная через количество
@@ -59,43 +116,25 @@ public class Aspect {
      *  Глубина равна 0, если аспект отсутствует;
      *  равна 1, если аспект присутствует только в этой гармонике;
      *  равна n, если соединение присутствует в гармониках кратностью до n от данной.
+     * Глубины от {@link AspectList#MAX_DEPTH} и больше, в том числе бесконечная глубина
+     *  аспекта с нулевым зазором, выдаются как {@link Integer#MAX_VALUE}.
+     * @return глубина аспекта.
      */
-    private final int depth;
-
-    private final PrecisionClass precisionClass;
-
-    /**
-     * Конструктор аспекта, т.е. одного из резонансов в дуге.
-     * @param numeric      гармоника, т.е. кратность дуги Кругу.
-     * @param clearance     эффективный орбис в карте гармоники.
-     * @param fromArc   реальная дуга, в которой распознан этот резонанс.
-     * @param orb   первичный орб для соединений, используемый при определении резонансов.
-     *              При этом если используется сокращение орба для синастрий (по умолчанию),
-     *              сюда передаётся уже сокращённое значение.
-     */
-    public Aspect(int numeric, double clearance, double fromArc, double orb) {
-        this.numeric = numeric;
-        this.clearance = clearance;
+    public int getDepth() {
+        return AspectList.depthOf(code);
+    }
 
-        multiplicity = findMultiplier(numeric, fromArc, orb);
-        strength = CelestialMechanics.calculateStrength(orb, clearance);
-        depth = (int) floor(orb / clearance);
-
-        if (depth <= 0) precisionClass = NONE;
-        else if (depth == 1) precisionClass = APPROXIMATE;
-        else if (depth == 2) precisionClass = CONFIDENT;
-        else if (depth <= 5) precisionClass = DEEP;
-        else if (depth <= 12) precisionClass = ACCURATE;
-        else if (depth <= 24) precisionClass = PRECISE;
-        else precisionClass = EXACT;
+    public PrecisionClass getPrecisionClass() {
+        return PrecisionClass.ofDepth(getDepth());
     }
+
     /**
      * Выдаёт список простых множителей, в произведении дающих
      * число резонанса данного аспекта.
      * @return  список множителей гармоники, каждый из которых является простым числом.
      */
     public List<Integer> getMultipliers() {
-        return Harmonics.multipliersExplicate(numeric);
+        return Harmonics.multipliersExplicate(getNumeric());
     }
 
     /**
@@ -106,7 +145,7 @@ public class Aspect {
      * @return  {@code true}, если резонансное число аспекта кратно данному.
      */
     public boolean hasMultiplier(int baseHarmonic) {
-        return getMultipliers().contains(baseHarmonic);
+        return Harmonics.isMultiplied(getNumeric(), baseHarmonic);
     }
 
     /**
@@ -122,7 +161,7 @@ public class Aspect {
      * @return строковое представление ранга точности.
      */
     public String getStrengthLevel() {
-        return precisionClass.getDepthDesc();
+        return getPrecisionClass().getDepthDesc();
     }
 
     /**
@@ -139,7 +178,7 @@ public class Aspect {
      * @return звездообразный код рейтинга силы согласно соответствию.
      */
     public String strengthRating() {
-        return precisionClass.getRating();
+        return getPrecisionClass().getRating();
     }
 
     /**
@@ -155,18 +194,29 @@ public class Aspect {
      * и он достаточно силён, чтобы проявиться в ней. И обратное в ином случае.
      */
     public boolean hasResonance(int harmonic) {
+        return hasResonance(code, harmonic);
+    }
+
+    /**
+     * Проверяет, как {@link #hasResonance(int)}, проявление упакованного аспекта в гармонике.
+     * @param code     код аспекта.
+     * @param harmonic номер гармоники.
+     * @return {@code true}, если аспект проявляется в этой гармонике.
+     */
+    static boolean hasResonance(long code, int harmonic) {
         if (harmonic <= 0) throw new IllegalArgumentException();
-        return harmonic % numeric == 0 && harmonic / numeric <= depth;
+        int numeric = AspectList.numericOf(code);
+        return harmonic % numeric == 0 && harmonic / numeric <= AspectList.depthOf(code);
     }
 
     @Override
     public String toString() {
         return "Резонанс %d %s- %s как %d (%.2f%%, %s)%n".formatted(
-                numeric,
-                multiplicity > 1 ? "(x%d) ".formatted(multiplicity) : "",
+                getNumeric(),
+                getMultiplicity() > 1 ? "(x%d) ".formatted(getMultiplicity()) : "",
                 getStrengthLevel(),
-                depth,
-                strength,
+                getDepth(),
+                getStrength(),
                 secondFormat(clearance, true));
     }
 }
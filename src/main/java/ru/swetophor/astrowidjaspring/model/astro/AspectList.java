@@ -0,0 +1,201 @@
+package ru.swetophor.astrowidjaspring.model.astro;
+
+import ru.swetophor.astrowidjaspring.utils.CelestialMechanics;
+
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Неизменяемый список аспектов одной дуги, представленный участком
+ * плоских примитивных массивов: кодом и зазором каждого аспекта.
+ * Код аспекта — число {@code long}, в битовых полях которого записаны
+ * резонансное число, множитель и глубина (см. {@link #encode(int, int, int)}).
+ * Аспекты на участке лежат по убыванию силы, так что отчёты
+ * обходят их без сортировки. Объекты {@link Aspect} создаются
+ * только при обращении к элементу как к объекту, как представления кода;
+ * примитивные методы доступа по номеру ничего не создают.
+ */
+public final class AspectList extends AbstractList<Aspect> implements RandomAccess {
+    /**
+     * Пустой список аспектов.
+     */
+    public static final AspectList EMPTY = new AspectList(new long[0], new double[0], 0, 0, 0);
+
+    private static final int NUMERIC_BITS = 20, MULTIPLICITY_BITS = 20, DEPTH_BITS = 24;
+    private static final long NUMERIC_MASK = (1L << NUMERIC_BITS) - 1,
+            MULTIPLICITY_MASK = (1L << MULTIPLICITY_BITS) - 1,
+            DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+    /**
+     * Наибольшая записываемая глубина; бóльшие глубины записываются ею,
+     * а читаются как {@link Integer#MAX_VALUE}, как глубина точного экзакта.
+     */
+    public static final int MAX_DEPTH = (int) DEPTH_MASK;
+
+    private final long[] codes;
+    private final double[] clearances;
+    private final int from, to;
+    /**
+     * Орбис, с которым рассчитаны аспекты (уже сокращённый для синастрий).
+     */
+    private final double orb;
+
+    /**
+     * Создаёт список поверх участка массивов, не копируя их.
+     * Участок не должен меняться, пока список в ходу.
+     * @param codes      коды аспектов.
+     * @param clearances зазоры аспектов.
+     * @param from       номер первого аспекта участка.
+     * @param to         номер, следующий за последним аспектом участка.
+     * @param orb        орбис, с которым рассчитаны аспекты.
+     */
+    public AspectList(long[] codes, double[] clearances, int from, int to, double orb) {
+        this.codes = codes;
+        this.clearances = clearances;
+        this.from = from;
+        this.to = to;
+        this.orb = orb;
+    }
+
+    /**
+     * Упаковывает характеристики аспекта в код.
+     * @param numeric      резонансное число, не больше {@code 2^20 - 1}.
+     * @param multiplicity множитель, не больше {@code 2^20 - 1}.
+     * @param depth        глубина; большие {@link #MAX_DEPTH} записываются как {@code MAX_DEPTH}.
+     * @return код аспекта.
+     * @throws IllegalArgumentException если число или множитель не помещаются в код.
+     */
+    public static long encode(int numeric, int multiplicity, int depth) {
+        if (numeric < 0 || numeric > NUMERIC_MASK || multiplicity < 0 || multiplicity > MULTIPLICITY_MASK)
+            throw new IllegalArgumentException("аспект %d (x%d) не помещается в код".formatted(numeric, multiplicity));
+        return numeric
+                | (long) multiplicity << NUMERIC_BITS
+                | (long) Math.min(Math.max(depth, 0), MAX_DEPTH) << (NUMERIC_BITS + MULTIPLICITY_BITS);
+    }
+
+    /**
+     * Упаковывает аспект, вычисляя его глубину по зазору и орбису.
+     * @param numeric      резонансное число.
+     * @param multiplicity множитель.
+     * @param clearance    зазор аспекта в карте гармоники.
+     * @param orb          орбис, с которым рассчитан аспект.
+     * @return код аспекта.
+     */
+    public static long encode(int numeric, int multiplicity, double clearance, double orb) {
+        return encode(numeric, multiplicity, depthOf(orb, clearance));
+    }
+
+    /**
+     * @param orb       орбис, с которым рассчитан аспект.
+     * @param clearance зазор аспекта.
+     * @return глубина аспекта, т.е. сколько раз зазор укладывается в орбис.
+     */
+    static int depthOf(double orb, double clearance) {
+        return (int) Math.floor(orb / clearance);
+    }
+
+    public static int numericOf(long code) {
+        return (int) (code & NUMERIC_MASK);
+    }
+
+    public static int multiplicityOf(long code) {
+        return (int) (code >>> NUMERIC_BITS & MULTIPLICITY_MASK);
+    }
+
+    /**
+     * @param code код аспекта.
+     * @return записанная в коде глубина; насыщенная глубина {@link #MAX_DEPTH}
+     * (в том числе у аспекта с нулевым зазором) выдаётся как {@link Integer#MAX_VALUE}.
+     */
+    public static int depthOf(long code) {
+        int depth = (int) (code >>> (NUMERIC_BITS + MULTIPLICITY_BITS) & DEPTH_MASK);
+        return depth == MAX_DEPTH ? Integer.MAX_VALUE : depth;
+    }
+
+    /**
+     * Упорядочивает участок массивов по убыванию силы аспектов, т.е. по росту зазора.
+     * Аспекты с равным зазором сохраняют прежний порядок. Участки аспектов одной
+     * дуги коротки, поэтому используется сортировка вставками.
+     * @param codes      коды аспектов.
+     * @param clearances зазоры аспектов.
+     * @param from       номер первого аспекта участка.
+     * @param to         номер, следующий за последним аспектом участка.
+     */
+    public static void sortByStrength(long[] codes, double[] clearances, int from, int to) {
+        for (int a = from + 1; a < to; a++) {
+            long code = codes[a];
+            double clearance = clearances[a];
+            int b = a - 1;
+            for (; b >= from && clearances[b] > clearance; b--) {
+                codes[b + 1] = codes[b];
+                clearances[b + 1] = clearances[b];
+            }
+            codes[b + 1] = code;
+            clearances[b + 1] = clearance;
+        }
+    }
+
+    @Override
+    public Aspect get(int index) {
+        int position = position(index);
+        return new Aspect(codes[position], clearances[position], orb);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    public double getOrb() {
+        return orb;
+    }
+
+    public long code(int index) {
+        return codes[position(index)];
+    }
+
+    public int numeric(int index) {
+        return numericOf(codes[position(index)]);
+    }
+
+    public int multiplicity(int index) {
+        return multiplicityOf(codes[position(index)]);
+    }
+
+    public int depth(int index) {
+        return depthOf(codes[position(index)]);
+    }
+
+    public double clearance(int index) {
+        return clearances[position(index)];
+    }
+
+    /**
+     * @param index номер аспекта в списке.
+     * @return сила аспекта, как {@link Aspect#getStrength()}.
+     */
+    public double strength(int index) {
+        return CelestialMechanics.calculateStrength(orb, clearances[position(index)]);
+    }
+
+    /**
+     * @param index номер аспекта в списке.
+     * @return класс точности аспекта, как {@link Aspect#getPrecisionClass()}.
+     */
+    public PrecisionClass precisionClass(int index) {
+        return PrecisionClass.ofDepth(depth(index));
+    }
+
+    /**
+     * @param index    номер аспекта в списке.
+     * @param harmonic проверяемая гармоника.
+     * @return проявляется ли аспект в указанной гармонике, как {@link Aspect#hasResonance(int)}.
+     */
+    public boolean hasResonance(int index, int harmonic) {
+        return Aspect.hasResonance(codes[position(index)], harmonic);
+    }
+
+    private int position(int index) {
+        return from + Objects.checkIndex(index, to - from);
+    }
+}
@@ -98,6 +98,34 @@ public class Astra implements ZodiacPoint {
         };
     }
 
+    /**
+     * Генератор астры из имени и координаты в целых градусах, минутах и секундах,
+     * трактуемых так же, как в {@link #fromData(String, Double...)}.
+     * Координата получается та же, что из тех же чисел в {@code Double}.
+     *
+     * @param name       астра, которая будет построена.
+     * @param coordinate одна, две, три или четыре целые величины, задающие координату.
+     * @return созданную на основе аргументов астру.
+     * @throws IllegalArgumentException если количество аргументов, задающих
+     *                                  координату, не равно одному, двум, трём или четырём.
+     */
+    public static Astra fromData(String name, int... coordinate) {
+        return switch (coordinate.length) {
+            case 0 -> throw new IllegalArgumentException("координат нет");
+            case 1 -> new Astra(name, coordinate[0]);
+            case 2 -> new Astra(name, coordinate[0], coordinate[1]);
+            case 3 -> new Astra(name, coordinate[0], coordinate[1], coordinate[2]);
+            case 4 -> {
+                if (coordinate[0] > 12 || coordinate[0] < 1)
+                    throw new IllegalArgumentException("номер знака от 1 до 12");
+                int signNumber = coordinate[0] - 1;
+                double degrees = signNumber * 30 + coordinate[1];
+                yield new Astra(name, degrees, coordinate[2], coordinate[3]);
+            }
+            default -> throw new IllegalArgumentException("слишком много координат");
+        };
+    }
+
     /**
      * Создаёт астру из строки специального формата.
      * Если чтение не удаётся, сообщает об этом.
@@ -105,27 +133,53 @@ public class Astra implements ZodiacPoint {
      * @param input строка вида "астра координаты", где 'координаты' может быть
      *              градусами, градусами и минутами или градусами,
      *              минутами и секундами - через пробел.
+     *              Координаты, записанные целыми числами, читаются без разбора
+     *              дробных чисел.
      * @return заполненный объект Астра.
      * @throws FileFormatException если по какой-либо причине строка не
      *              читается как корректные данные об астре.
      */
     public static Astra readFromString(String input) {
         var elements = input.trim().split(" ");
-        Double[] coors;
+        int[] whole = new int[elements.length - 1];
+        Double[] coors = null;
 
         try {
             if (elements.length == 0)
                 throw new IllegalArgumentException("текст не содержит строк");
 
-            coors = IntStream.range(1, elements.length)
-                    .mapToObj(i -> Double.parseDouble(elements[i]))
-                    .collect(Collectors.toCollection(() -> new ArrayList<>(4)))
-                    .toArray(Double[]::new);
+            int read = 0;
+            while (read < whole.length && (whole[read] = parseWhole(elements[read + 1])) >= 0)
+                read++;
+            if (read < whole.length)
+                coors = IntStream.range(1, elements.length)
+                        .mapToObj(i -> Double.parseDouble(elements[i]))
+                        .collect(Collectors.toCollection(() -> new ArrayList<>(4)))
+                        .toArray(Double[]::new);
         } catch (RuntimeException e) {
             throw new FileFormatException("Не удалось прочитать строку '" + input + "': " + e.getMessage());
         }
 
-        return Astra.fromData(elements[0], coors);
+        return coors == null ?
+                Astra.fromData(elements[0], whole) :
+                Astra.fromData(elements[0], coors);
+    }
+
+    /**
+     * Читает неотрицательное целое число, записанное одними десятичными цифрами.
+     * @param token читаемый фрагмент строки.
+     * @return прочитанное число, или -1, если фрагмент не является такой записью
+     * (пуст, содержит иные знаки или слишком длинен).
+     */
+    private static int parseWhole(String token) {
+        if (token.isEmpty() || token.length() > 9) return -1;
+        int value = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
     }
 
     public static boolean ofSameHeaven(Astra a, Astra b) {
@@ -218,6 +272,14 @@ public class Astra implements ZodiacPoint {
     }
 
 
+    /**
+     * @return зодиакальная координата астры, округлённая до угловой секунды,
+     * в угловых секундах (от 0 до {@link CelestialMechanics#CIRCLE_SECONDS}, не включая).
+     */
+    public int getArcSeconds() {
+        return CelestialMechanics.toArcSeconds(zodiacPosition);
+    }
+
     public double getArcInHarmonicWith(int harmonic, Astra counterpart) {
         return getArcForHarmonic(this, counterpart, harmonic);
     }
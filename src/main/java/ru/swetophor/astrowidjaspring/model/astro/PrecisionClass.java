@@ -9,33 +9,50 @@ public enum PrecisionClass {
     /**
      * Сила аспекта < 0% - отсутствует в данной гармонике
      */
-    NONE("- — ", "_"),
+    NONE("- — ", "_", 0),
     /**
      * Сила аспекта < 50% - присутствует только в данной гармонике
      */
-    APPROXIMATE("- приблизительный ", "★"),
+    APPROXIMATE("- приблизительный ", "★", 1),
     /**
      * Сила аспекта 50-66% - присутствует в данной и в следующей х2
      */
-    CONFIDENT("- уверенный ", "★★"),
+    CONFIDENT("- уверенный ", "★★", 2),
     /**
      * Сила аспекта 67-83% - сохраняется ещё в гармониках х3, х4 и х5
      */
-    DEEP("- глубокий ", "★★★"),
+    DEEP("- глубокий ", "★★★", 3),
     /**
      * Сила аспекта 84-92% - сохраняется до гармоник х12
      */
-    ACCURATE("- точный ", "★★★★"),
+    ACCURATE("- точный ", "★★★★", 6),
     /**
      * Сила аспекта 93-96% - сохраняется до х24 гармоник
      */
-    PRECISE("- глубоко точный ", "★★★★"),
+    PRECISE("- глубоко точный ", "★★★★", 13),
     /**
      * Сила аспекта > 96 % - присутствует в нескольких десятках кратных гармоник
      */
-    EXACT("- крайне точный ", "✰✰✰✰✰");
+    EXACT("- крайне точный ", "✰✰✰✰✰", 25);
 
     private final String depthDesc;
     private final String rating;
+    /**
+     * Наименьшая глубина аспекта этого класса.
+     */
+    private final int minDepth;
+
+    private static final PrecisionClass[] CLASSES = values();
+
+    /**
+     * Определяет класс точности аспекта по его глубине.
+     * @param depth глубина аспекта, т.е. до какой кратности гармоники он сохраняется.
+     * @return соответствующий глубине класс точности.
+     */
+    public static PrecisionClass ofDepth(int depth) {
+        for (int i = CLASSES.length - 1; i > 0; i--)
+            if (depth >= CLASSES[i].minDepth) return CLASSES[i];
+        return NONE;
+    }
 
 }
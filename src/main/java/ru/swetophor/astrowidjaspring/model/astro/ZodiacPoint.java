@@ -1,5 +1,13 @@
 package ru.swetophor.astrowidjaspring.model.astro;
 
+/**
+ * Точка на зодиакальном круге.
+ */
 public interface ZodiacPoint {
+    /**
+     * @return зодиакальная координата точки, нормализованная, т.е. от 0° до 360° (не включая).
+     * На нормализованность полагаются примитивные ядра {@link
+     * ru.swetophor.astrowidjaspring.utils.CelestialMechanics CelestialMechanics}.
+     */
     double getZodiacPosition();
 }
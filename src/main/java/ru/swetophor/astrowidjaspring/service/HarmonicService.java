@@ -1,24 +1,74 @@
 package ru.swetophor.astrowidjaspring.service;
 
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
+import ru.swetophor.astrowidjaspring.config.Settings;
+import ru.swetophor.astrowidjaspring.model.AnalysisRequest;
 import ru.swetophor.astrowidjaspring.model.AspectTable;
 import ru.swetophor.astrowidjaspring.model.AstroMatrix;
+import ru.swetophor.astrowidjaspring.model.OrbSweep;
+import ru.swetophor.astrowidjaspring.model.PatternDendrogram;
+import ru.swetophor.astrowidjaspring.model.ResonanceProfile;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
 import ru.swetophor.astrowidjaspring.model.chart.ChartObject;
 import ru.swetophor.astrowidjaspring.model.PatternTable;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
 public class HarmonicService {
-    private final Map<ChartObject, AstroMatrix> matrices = new HashMap<>();
+    /**
+     * Сколько матриц запоминается; при превышении дольше всех не запрошенная закрывается.
+     */
+    private static final int REMEMBERED_MATRICES = 16;
 
+    private final Map<ChartObject, AstroMatrix> matrices =
+            new LinkedHashMap<>(REMEMBERED_MATRICES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ChartObject, AstroMatrix> eldest) {
+                    if (size() <= REMEMBERED_MATRICES) return false;
+                    eldest.getValue().close();
+                    return true;
+                }
+            };
+
+    /**
+     * Выдаёт матрицу для карты, строя её при первом обращении. Если с тех пор
+     * изменилась крайняя гармоника, матрица доводится до неё без перестройки;
+     * если изменились орбисы, режим угловых секунд или способ хранения резонансов,
+     * матрица закрывается и строится заново.
+     * @param chartObject карта или группа карт.
+     * @return матрица резонансов для неё.
+     */
     private AstroMatrix getMatrix(ChartObject chartObject) {
-        if (matrices.get(chartObject) == null)
+        AstroMatrix cached = matrices.get(chartObject);
+        if (cached != null && isOutdated(cached)) {
+            matrices.remove(chartObject);
+            cached.close();
+            cached = null;
+        }
+        if (cached == null)
             matrices.put(chartObject, new AstroMatrix(chartObject.getData()));
         // по неизвестной причине, использование .putIfAbsent()
         // приводит к пересозданию матрицы на каждом обращении
-        return matrices.get(chartObject);
+        AstroMatrix matrix = matrices.get(chartObject);
+        if (matrix.getEdgeHarmonic() != Settings.getEdgeHarmonic())
+            matrix.setEdgeHarmonic(Settings.getEdgeHarmonic());
+        return matrix;
+    }
+
+    /**
+     * @param matrix запомненная матрица.
+     * @return рассчитана ли матрица с иными настройками, чем нынешние, не считая крайней гармоники.
+     */
+    private static boolean isOutdated(AstroMatrix matrix) {
+        return matrix.getStorage() != Settings.getMatrixStorage()
+                || !matrix.getProfile().withEdgeHarmonic(Settings.getEdgeHarmonic())
+                .equals(ResonanceProfile.current());
     }
 
     public PatternTable calculatePatternTable(ChartObject chartObject) {
@@ -29,4 +79,109 @@ public class HarmonicService {
         return getMatrix(chartObject).buildAspectTable();
     }
 
+    /**
+     * Строит таблицу паттернов по запросу анализа. Матрица для этого строится
+     * отдельно, с расчётом только нужных запросу гармоник, аспектов и пар,
+     * не запоминается и закрывается, как только таблица построена:
+     * паттерны таблицы на Матрицу не ссылаются.
+     * @param chartObject карта или группа карт.
+     * @param request     запрос анализа.
+     * @return таблица паттернов в пределах запроса.
+     */
+    public PatternTable calculatePatternTable(ChartObject chartObject, AnalysisRequest request) {
+        try (AstroMatrix matrix = new AstroMatrix(request, chartObject.getData())) {
+            return matrix.buildPatternTable();
+        }
+    }
+
+    /**
+     * Строит таблицу аспектов по запросу анализа, как
+     * {@link #calculatePatternTable(ChartObject, AnalysisRequest)}; резонансы таблицы
+     * держат свои аспекты в куче и остаются годными после закрытия Матрицы.
+     * @param chartObject карта или группа карт.
+     * @param request     запрос анализа.
+     * @return таблица аспектов в пределах запроса.
+     */
+    public AspectTable calculateAspectTable(ChartObject chartObject, AnalysisRequest request) {
+        try (AstroMatrix matrix = new AstroMatrix(request, chartObject.getData())) {
+            return matrix.buildAspectTable();
+        }
+    }
+
+    /**
+     * Сводит аспекты и паттерны карты по диапазону делителей орбиса,
+     * не перестраивая матрицу для каждого делителя.
+     * @param chartObject карта или группа карт.
+     * @param fromDivisor наименьший делитель орбиса.
+     * @param toDivisor   наибольший делитель орбиса.
+     * @return итоги по каждому делителю.
+     */
+    public OrbSweep calculateOrbSweep(ChartObject chartObject, int fromDivisor, int toDivisor) {
+        return new OrbSweep(fromDivisor, toDivisor, chartObject.getData());
+    }
+
+    /**
+     * Строит дерево слияния паттернов карты по мере роста орбиса для указанной гармоники.
+     * @param chartObject карта или группа карт.
+     * @param harmonic    гармоника, по которой астры связываются.
+     * @return дерево слияния паттернов.
+     */
+    public PatternDendrogram calculateDendrogram(ChartObject chartObject, int harmonic) {
+        return new PatternDendrogram(harmonic, chartObject.getData());
+    }
+
+    /**
+     * Переносит астру на новую позицию. Все уже построенные матрицы,
+     * в которые входит её карта, пересчитывают только резонансы этой астры.
+     * @param astra          перемещаемая астра.
+     * @param zodiacPosition новая зодиакальная координата в градусах.
+     */
+    public void moveAstra(Astra astra, double zodiacPosition) {
+        astra.setZodiacPosition(zodiacPosition);
+        matricesWith(astra.getHeaven()).forEach(m -> m.updateAstra(astra));
+    }
+
+    /**
+     * Добавляет астру в карту (или заменяет одноимённую), дополняя
+     * все уже построенные матрицы, в которые входит эта карта.
+     * @param chart карта, в которую добавляется астра.
+     * @param astra добавляемая астра.
+     */
+    public void addAstra(Chart chart, Astra astra) {
+        List<AstroMatrix> affected = matricesWith(chart);
+        if (affected.isEmpty())
+            chart.addAstra(astra);
+        else
+            affected.forEach(m -> m.addAstra(chart, astra));
+    }
+
+    /**
+     * Удаляет астру из её карты и из всех уже построенных матриц,
+     * в которые входит эта карта.
+     * @param astra удаляемая астра.
+     */
+    public void removeAstra(Astra astra) {
+        List<AstroMatrix> affected = matricesWith(astra.getHeaven());
+        if (affected.isEmpty())
+            astra.getHeaven().getAstras().remove(astra);
+        else
+            affected.forEach(m -> m.removeAstra(astra));
+    }
+
+    /**
+     * Закрывает все запомненные матрицы при остановке приложения,
+     * освобождая память, которую они держат вне кучи.
+     */
+    @PreDestroy
+    public void closeMatrices() {
+        matrices.values().forEach(AstroMatrix::close);
+        matrices.clear();
+    }
+
+    private List<AstroMatrix> matricesWith(Chart chart) {
+        return matrices.values().stream()
+                .filter(m -> Arrays.asList(m.getHeavens()).contains(chart))
+                .toList();
+    }
+
 }
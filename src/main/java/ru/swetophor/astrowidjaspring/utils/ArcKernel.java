@@ -0,0 +1,25 @@
+package ru.swetophor.astrowidjaspring.utils;
+
+/**
+ * Ускоренное ядро {@link HarmonicArcs}, подключаемое, если оно собрано и доступно.
+ * Каждый метод обрабатывает столько элементов, сколько укладывается в целые векторы,
+ * и возвращает их количество; остаток досчитывает {@link HarmonicArcs} обычным циклом.
+ */
+interface ArcKernel {
+    /**
+     * @return сколько чисел {@code double} обрабатывается за одну операцию.
+     */
+    int lanes();
+
+    /**
+     * Как {@link HarmonicArcs#inHarmonics(double, int[], int, int, double[])}, для начала отрезка.
+     * @return сколько первых гармоник отрезка обработано.
+     */
+    int inHarmonics(double arc, int[] harmonics, int from, int to, double[] out);
+
+    /**
+     * Как {@link HarmonicArcs#forHarmonic(double[], int, int, double[])}, для начала массива.
+     * @return сколько первых дуг обработано.
+     */
+    int forHarmonic(double[] arcs, int count, int harmonic, double[] out);
+}
@@ -24,6 +24,18 @@ public final class CelestialMechanics {
      * Полкруга в градусах, т.е. 180.
      */
     public static final double HALF_CIRCLE = 180.0;
+    /**
+     * Круг в угловых секундах, т.е. 360 * 3600.
+     */
+    public static final int CIRCLE_SECONDS = 1_296_000;
+    /**
+     * Полкруга в угловых секундах.
+     */
+    public static final int HALF_CIRCLE_SECONDS = CIRCLE_SECONDS / 2;
+    /**
+     * Угловых секунд в градусе.
+     */
+    public static final double SECONDS_PER_DEGREE = 3600.0;
 
     /**
      * Вычисляет эклиптическую дугу между двумя точками на большом круге
@@ -39,6 +51,91 @@ public final class CelestialMechanics {
                 arc;
     }
 
+    /**
+     * Вычисляет эклиптическую дугу между двумя уже нормализованными координатами.
+     * В отличие от {@link #getArc(double, double)}, не приводит координаты к кругу,
+     * поэтому годится для горячих циклов по заранее снятым позициям астр.
+     * @param a первая координата, от 0° до 360° (не включая).
+     * @param b вторая координата, от 0° до 360° (не включая).
+     * @return наименьшую дугу между координатами (от 0° до 180°).
+     */
+    public static double arcBetween(double a, double b) {
+        double arc = abs(a - b);
+        return arc > HALF_CIRCLE ?
+                CIRCLE - arc :
+                arc;
+    }
+
+    /**
+     * Вычисляет дугу в направлении от первой нормализованной координаты до второй.
+     * @param from координата, от которой считается, от 0° до 360° (не включая).
+     * @param to   координата, до которой считается, от 0° до 360° (не включая).
+     * @return направленную дугу (от 0° до 359°59'59").
+     */
+    public static double vectorArcBetween(double from, double to) {
+        double arc = to - from;
+        return arc < 0.0 ? CIRCLE + arc : arc;
+    }
+
+    /**
+     * Сообщает, как выглядит дуга в карте гармоники, т.е. {@code normalizeArc(arc * harmonic)}
+     * для неотрицательной дуги, без лишних приведений к кругу.
+     * @param arc      дуга между точками, от 0° до 180°.
+     * @param harmonic номер гармоники.
+     * @return угловое расстояние в карте указанной гармоники (от 0° до 180°).
+     */
+    public static double arcInHarmonic(double arc, int harmonic) {
+        double inHarmonic = arc * harmonic % CIRCLE;
+        return inHarmonic > HALF_CIRCLE ?
+                CIRCLE - inHarmonic :
+                inHarmonic;
+    }
+
+    /**
+     * Переводит координату в целые угловые секунды, округляя до ближайшей секунды.
+     * @param degrees координата в градусах.
+     * @return координату в угловых секундах, от 0 до {@link #CIRCLE_SECONDS} (не включая).
+     */
+    public static int toArcSeconds(double degrees) {
+        return (int) (round(normalizeCoordinate(degrees) * SECONDS_PER_DEGREE) % CIRCLE_SECONDS);
+    }
+
+    /**
+     * @param seconds дуга или координата в угловых секундах.
+     * @return та же величина в градусах.
+     */
+    public static double fromArcSeconds(int seconds) {
+        return seconds / SECONDS_PER_DEGREE;
+    }
+
+    /**
+     * Вычисляет дугу между двумя координатами в угловых секундах, как
+     * {@link #arcBetween(double, double)}, но точно, в целых числах.
+     * @param a первая координата, от 0 до {@link #CIRCLE_SECONDS} (не включая).
+     * @param b вторая координата, от 0 до {@link #CIRCLE_SECONDS} (не включая).
+     * @return наименьшую дугу между координатами в угловых секундах (от 0 до {@link #HALF_CIRCLE_SECONDS}).
+     */
+    public static int arcBetween(int a, int b) {
+        int arc = abs(a - b);
+        return arc > HALF_CIRCLE_SECONDS ?
+                CIRCLE_SECONDS - arc :
+                arc;
+    }
+
+    /**
+     * Сообщает, как выглядит дуга в угловых секундах в карте гармоники,
+     * как {@link #arcInHarmonic(double, int)}, но точно, в целых числах.
+     * @param arc      дуга в угловых секундах, от 0 до {@link #HALF_CIRCLE_SECONDS}.
+     * @param harmonic номер гармоники.
+     * @return угловое расстояние в карте гармоники в угловых секундах.
+     */
+    public static int arcInHarmonic(int arc, int harmonic) {
+        int inHarmonic = (int) ((long) arc * harmonic % CIRCLE_SECONDS);
+        return inHarmonic > HALF_CIRCLE_SECONDS ?
+                CIRCLE_SECONDS - inHarmonic :
+                inHarmonic;
+    }
+
     /**
      * Вычисляет эклиптическую дугу между зодиакальными точками.
      * @param a первая точка (астра).
@@ -46,7 +143,7 @@ public final class CelestialMechanics {
      * @return наименьшую дугу между двумя указанными астрами (от 0° до 180°).
      */
     public static double getArc(ZodiacPoint a, ZodiacPoint b) {
-        return getArc(a.getZodiacPosition(), b.getZodiacPosition());
+        return arcBetween(a.getZodiacPosition(), b.getZodiacPosition());
     }
 
     /**
@@ -57,8 +154,7 @@ public final class CelestialMechanics {
      * @return  направленную дугу от точки {@code a} к точке {@code b} (от 0° до 359°59'59").
      */
     public static double getVectorArc(ZodiacPoint a, ZodiacPoint b) {
-        double arc = b.getZodiacPosition() - a.getZodiacPosition();
-        return arc < 0.0 ? 360.0 + arc : arc;
+        return vectorArcBetween(a.getZodiacPosition(), b.getZodiacPosition());
     }
 
     /**
@@ -187,7 +283,7 @@ public final class CelestialMechanics {
      * @return  угловое расстояние между астрами в карте указанной гармоники.
      */
     public static double getArcForHarmonic(ZodiacPoint a, ZodiacPoint b, int harmonic) {
-        return normalizeArc(getArc(a, b) * harmonic);
+        return arcInHarmonic(getArc(a, b), harmonic);
     }
 
     /**
@@ -286,17 +382,42 @@ public final class CelestialMechanics {
      * @return  координату на окружности, являющуюся средней для данных точек.
      */
     public static double calculateAvg(ZodiacPoint... points) {
-        if (points.length == 1)
-            return points[0].getZodiacPosition();
+        double[] positions = new double[points.length];
+        for (int i = 0; i < points.length; i++)
+            positions[i] = points[i].getZodiacPosition();
+        return calculateAvg(positions);
+    }
 
-        List<ZodiacPoint> astras = new ArrayList<>(List.of(points));
-        arrangeAsChain(astras);
+    /**
+     * Вычисляет центроид для нескольких нормализованных координат, как
+     * {@link #calculateAvg(ZodiacPoint...)}: координаты выстраиваются цепью
+     * (см. {@link #arrangeAsChain(List)}), и к первой из них прибавляется
+     * среднее её направленных дуг до остальных.
+     * @param positions координаты от 0° до 360° (не включая); массив при этом сортируется.
+     * @return  координату на окружности, являющуюся средней для данных координат.
+     */
+    public static double calculateAvg(double[] positions) {
+        int n = positions.length;
+        if (n == 1)
+            return positions[0];
+
+        Arrays.sort(positions);
+        double maxDist = vectorArcBetween(positions[n - 1], positions[0]);
+        int start = 0;
+        for (int i = 1; i < n; i++) {
+            double dist = vectorArcBetween(positions[i - 1], positions[i]);
+            if (dist > maxDist) {
+                start = i;
+                maxDist = dist;
+            }
+        }
 
-        ZodiacPoint first = astras.getFirst();
-        double sum = IntStream.range(1, astras.size())
-                .mapToDouble(i -> getVectorArc(first, astras.get(i)))
+        double first = positions[start];
+        int chainStart = start;
+        double sum = IntStream.range(1, n)
+                .mapToDouble(i -> vectorArcBetween(first, positions[(chainStart + i) % n]))
                 .sum();
-        return normalizeCoordinate(first.getZodiacPosition() + sum / astras.size());
+        return normalizeCoordinate(first + sum / n);
     }
 
 }
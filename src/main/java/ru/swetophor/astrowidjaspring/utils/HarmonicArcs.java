@@ -0,0 +1,70 @@
+package ru.swetophor.astrowidjaspring.utils;
+
+/**
+ * Пакетное вычисление дуг в картах гармоник, т.е. {@code normalizeArc(arc * h)}
+ * сразу для многих гармоник одной дуги или для многих дуг одной гармоники.
+ * Результаты в точности совпадают с {@link CelestialMechanics#normalizeArc(double)}.
+ * <p>
+ * Векторное ядро ({@code VectorHarmonicArcs} из {@code src/vector/java}) собирается,
+ * только если сборка запущена со свойством {@code -PvectorKernel}. Тогда, если JVM
+ * запущена с модулем {@code jdk.incubator.vector} ({@code --add-modules jdk.incubator.vector},
+ * в том числе при запуске собранного jar: {@code java --add-modules jdk.incubator.vector -jar ...})
+ * и процессор даёт хотя бы двухполосные векторы {@code double}, расчёт ведётся векторами;
+ * иначе — обычным циклом.
+ */
+public final class HarmonicArcs {
+    /**
+     * Векторное ядро, или {@code null}, если оно не собрано или недоступно.
+     */
+    private static final ArcKernel VECTOR = loadVectorKernel();
+
+    private HarmonicArcs() {
+    }
+
+    private static ArcKernel loadVectorKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+            return null;
+        try {
+            ArcKernel kernel = (ArcKernel) Class.forName(HarmonicArcs.class.getPackageName() + ".VectorHarmonicArcs")
+                    .getDeclaredConstructor()
+                    .newInstance();
+            return kernel.lanes() > 1 ? kernel : null;
+        } catch (ReflectiveOperationException | LinkageError unavailable) {
+            return null;
+        }
+    }
+
+    /**
+     * @return {@code true}, если дуги считаются векторами.
+     */
+    public static boolean isVectorized() {
+        return VECTOR != null;
+    }
+
+    /**
+     * Вычисляет, как выглядит одна дуга в картах нескольких гармоник.
+     * @param arc       дуга между астрами, от 0° до 180°.
+     * @param harmonics массив, содержащий номера гармоник.
+     * @param from      позиция первой гармоники в массиве.
+     * @param to        позиция, следующая за последней гармоникой.
+     * @param out       массив, куда с начала пишутся дуги для каждой гармоники.
+     */
+    public static void inHarmonics(double arc, int[] harmonics, int from, int to, double[] out) {
+        int done = VECTOR != null ? VECTOR.inHarmonics(arc, harmonics, from, to, out) : 0;
+        for (int k = from + done; k < to; k++)
+            out[k - from] = CelestialMechanics.arcInHarmonic(arc, harmonics[k]);
+    }
+
+    /**
+     * Вычисляет, как выглядят несколько дуг в карте одной гармоники.
+     * @param arcs     дуги между астрами, от 0° до 180°.
+     * @param count    сколько первых дуг массива обработать.
+     * @param harmonic номер гармоники.
+     * @param out      массив, куда пишутся дуги в гармонике; может совпадать с {@code arcs}.
+     */
+    public static void forHarmonic(double[] arcs, int count, int harmonic, double[] out) {
+        int done = VECTOR != null ? VECTOR.forHarmonic(arcs, count, harmonic, out) : 0;
+        for (int k = done; k < count; k++)
+            out[k] = CelestialMechanics.arcInHarmonic(arcs[k], harmonic);
+    }
+}
@@ -0,0 +1,100 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.model.astro.AspectList;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.model.astro.PrecisionClass;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.swetophor.astrowidjaspring.model.MatrixFixture.*;
+
+class AnalysisRequestTest {
+
+    @Test
+    void restrictedRequest_matchesFilteredUnrestrictedMatrix() {
+        Chart[] charts = charts();
+        List<Astra> selected = new ArrayList<>(charts[0].getAstras().subList(0, 9));
+        selected.addAll(charts[1].getAstras().subList(4, 11));
+        AnalysisRequest[] requests = {
+                AnalysisRequest.full().forHarmonics(5, 48)
+                        .withMinPrecision(PrecisionClass.CONFIDENT)
+                        .withMinStrength(40),
+                AnalysisRequest.full().forHarmonics(7, 72)
+                        .forAstras(selected.toArray(Astra[]::new)),
+                AnalysisRequest.full().forHarmonics(1, 30)
+                        .withMinPrecision(PrecisionClass.ACCURATE)
+                        .forCharts(charts[1])
+        };
+        for (AnalysisRequest request : requests)
+            for (MatrixStorage storage : MatrixStorage.values()) {
+                AstroMatrix full = new AstroMatrix(AnalysisRequest.full().forHarmonics(1, request.toHarmonic()),
+                        MatrixStorage.OBJECTS, MatrixBuild.SEQUENTIAL, charts);
+                try (AstroMatrix restricted = new AstroMatrix(request, storage, MatrixBuild.SEQUENTIAL, charts)) {
+                    List<Astra> astras = full.getAllAstras();
+                    for (int i = 0; i < astras.size() - 1; i++)
+                        for (int j = i + 1; j < astras.size(); j++) {
+                            ResonanceBatch pair = restricted.getResonanceFor(i, j);
+                            if (!request.admits(astras.get(i)) || !request.admits(astras.get(j))) {
+                                assertTrue(pair.getAspects().isEmpty(), "%s: пара %d-%d".formatted(request, i, j));
+                                continue;
+                            }
+                            assertEquals(describe(i, j, filtered(full.getResonanceFor(i, j), request)),
+                                    describe(i, j, pair), "%s, %s".formatted(request, storage));
+                        }
+                }
+            }
+    }
+
+    /**
+     * Копия пары Матрицы без запроса, в которой оставлены только принятые запросом аспекты.
+     */
+    private static ResonanceBatch filtered(ResonanceBatch pair, AnalysisRequest request) {
+        AspectList aspects = pair.getAspects();
+        long[] codes = new long[aspects.size()];
+        double[] clearances = new double[aspects.size()];
+        int count = 0;
+        for (int a = 0; a < aspects.size(); a++)
+            if (request.admits(aspects.code(a), aspects.clearance(a), pair.getOrb())) {
+                codes[count] = aspects.code(a);
+                clearances[count++] = aspects.clearance(a);
+            }
+        return new ResonanceBatch(pair.getAstra_1(), pair.getAstra_2(), pair.getArc(), pair.getOrb(),
+                pair.getUltimateHarmonic(), new AspectList(codes, clearances, 0, count, pair.getOrb()));
+    }
+
+    @Test
+    void harmonicRangeRequest_findsSamePatternsAsUnrestrictedMatrix() {
+        Chart[] charts = charts();
+        AnalysisRequest request = AnalysisRequest.full().forHarmonics(9, 64);
+        AstroMatrix full = new AstroMatrix(AnalysisRequest.full().forHarmonics(1, 64),
+                MatrixStorage.OBJECTS, MatrixBuild.SEQUENTIAL, charts);
+        for (MatrixStorage storage : MatrixStorage.values())
+            try (AstroMatrix restricted = new AstroMatrix(request, storage, MatrixBuild.SEQUENTIAL, charts)) {
+                for (List<Chart> combination : full.heavenCombinations(false))
+                    for (int h = request.fromHarmonic(); h <= request.toHarmonic(); h++) {
+                        assertEquals(describe(full.getHarmonicGraph(h)), describe(restricted.getHarmonicGraph(h)));
+                        assertEquals(describe(full.findPatterns(h, combination)),
+                                describe(restricted.findPatterns(h, combination)),
+                                "%s, гармоника %d".formatted(storage, h));
+                    }
+            }
+    }
+
+    @Test
+    void restrictedMatrix_cannotBeExtendedPastRequest() {
+        AnalysisRequest request = AnalysisRequest.full().forHarmonics(5, 48);
+        try (AstroMatrix matrix = new AstroMatrix(request, MatrixStorage.PACKED, MatrixBuild.SEQUENTIAL, charts())) {
+            assertEquals(48, matrix.getProfile().edgeHarmonic());
+            assertEquals(48, matrix.getEdgeHarmonic());
+
+            // пары рассчитаны только до верхней гармоники запроса: досчитать отфильтрованное нечем
+            matrix.setEdgeHarmonic(24);
+            matrix.setEdgeHarmonic(48);
+            assertThrows(IllegalStateException.class, () -> matrix.setEdgeHarmonic(49));
+        }
+    }
+}
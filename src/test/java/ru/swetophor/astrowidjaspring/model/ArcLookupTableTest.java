@@ -0,0 +1,93 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.utils.CelestialMechanics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.swetophor.astrowidjaspring.utils.CelestialMechanics.normalizeArc;
+
+class ArcLookupTableTest {
+
+    private static List<Integer> bruteForce(double arc, double orb, int edge) {
+        return IntStream.rangeClosed(1, edge)
+                .filter(h -> normalizeArc(arc * h) < orb)
+                .boxed()
+                .toList();
+    }
+
+    private static List<Integer> confirmed(double arc, double orb, int edge) {
+        List<Integer> harmonics = new ArrayList<>();
+        for (int h : ArcLookupTable.of(orb, edge).candidates(arc))
+            if (normalizeArc(arc * h) < orb)
+                harmonics.add(h);
+        return harmonics;
+    }
+
+    @Test
+    void candidates_coverAllHarmonicsOfRandomArcs() {
+        Random random = new Random(1);
+        for (int edge : new int[]{12, 108, 250, 1000})
+            for (double orb : new double[]{12, 6, 0.5})
+                for (int i = 0; i < 500; i++) {
+                    double arc = random.nextDouble() * 180;
+                    assertEquals(bruteForce(arc, orb, edge), confirmed(arc, orb, edge),
+                            "дуга %s, орбис %s, до %d".formatted(arc, orb, edge));
+                }
+    }
+
+    @Test
+    void candidates_coverExactAspectsAndCellBorders() {
+        for (int edge : new int[]{36, 108, 144})
+            for (int q = 1; q <= 36; q++)
+                for (int p = 0; p <= q / 2; p++) {
+                    double arc = 360.0 * p / q;
+                    assertEquals(bruteForce(arc, 12, edge), confirmed(arc, 12, edge),
+                            "дуга %d/%d, до %d".formatted(p, q, edge));
+                }
+        for (int minute = 0; minute < 180 * 60; minute += 7) {
+            double arc = minute / 60.0;
+            assertEquals(bruteForce(arc, 6, 108), confirmed(arc, 6, 108), "дуга %s".formatted(arc));
+            double justBelow = Math.nextDown(arc);
+            if (justBelow >= 0)
+                assertEquals(bruteForce(justBelow, 6, 108), confirmed(justBelow, 6, 108), "дуга %s".formatted(justBelow));
+        }
+    }
+
+    @Test
+    void candidates_areAscendingAndWithinEdge() {
+        int[] candidates = ArcLookupTable.of(12, 250).candidates(47.5);
+        for (int i = 0; i < candidates.length; i++) {
+            assertTrue(candidates[i] >= 1 && candidates[i] <= 250);
+            if (i > 0) assertTrue(candidates[i - 1] < candidates[i]);
+        }
+    }
+
+    @Test
+    void candidates_coverAllHarmonicsOfArcsInSeconds() {
+        Random random = new Random(2);
+        for (int edge : new int[]{24, 108, 300})
+            for (int i = 0; i < 1000; i++) {
+                int arcSeconds = random.nextInt(180 * 3600 + 1);
+                List<Integer> candidates = IntStream.of(ArcLookupTable.of(12, edge)
+                        .candidates(CelestialMechanics.fromArcSeconds(arcSeconds))).boxed().toList();
+                List<Integer> inOrb = IntStream.rangeClosed(1, edge)
+                        .filter(h -> CelestialMechanics.arcInHarmonic(arcSeconds, h) < 12 * 3600)
+                        .boxed()
+                        .toList();
+                assertTrue(candidates.containsAll(inOrb), "%d″, до %d".formatted(arcSeconds, edge));
+            }
+    }
+
+    @Test
+    void of_keepsBoundedNumberOfTables() {
+        for (int edge = 10; edge < 10 + 3 * ArcLookupTable.MAX_TABLES; edge++)
+            ArcLookupTable.of(12, edge);
+        assertTrue(ArcLookupTable.cachedTables() <= ArcLookupTable.MAX_TABLES);
+        assertSame(ArcLookupTable.of(3, 40), ArcLookupTable.of(3, 40));
+    }
+}
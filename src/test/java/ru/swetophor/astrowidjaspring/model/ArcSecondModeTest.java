@@ -0,0 +1,101 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.config.Settings;
+import ru.swetophor.astrowidjaspring.model.astro.AspectList;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Для карт, координаты которых заданы с точностью до секунды, расчёт в угловых
+ * секундах должен находить те же аспекты, что и расчёт в {@code double}.
+ */
+class ArcSecondModeTest {
+
+    private final boolean arcSecondMode = Settings.isArcSecondMode();
+
+    @AfterEach
+    void restoreSettings() {
+        if (arcSecondMode) Settings.enableArcSecondMode();
+        else Settings.disableArcSecondMode();
+    }
+
+    private static Chart secondPreciseChart(String name, int size, long seed) {
+        Random random = new Random(seed);
+        List<Astra> astras = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+            astras.add(Astra.readFromString("%s%d %d %d %d".formatted(name, i,
+                    random.nextInt(360), random.nextInt(60), random.nextInt(60))));
+        return new Chart(name, astras);
+    }
+
+    private static AstroMatrix build(boolean inArcSeconds, MatrixStorage storage, Chart... charts) {
+        if (inArcSeconds) Settings.enableArcSecondMode();
+        else Settings.disableArcSecondMode();
+        return new AstroMatrix(storage, MatrixBuild.SEQUENTIAL, charts);
+    }
+
+    @Test
+    void arcSecondMode_findsSameAspectsAsDoubleMode() {
+        Chart[] charts = {secondPreciseChart("A", 20, 181), secondPreciseChart("B", 16, 182)};
+        AstroMatrix inDegrees = build(false, MatrixStorage.OBJECTS, charts);
+        for (MatrixStorage storage : MatrixStorage.values())
+            try (AstroMatrix inSeconds = build(true, storage, charts)) {
+                int n = inDegrees.getAllAstras().size();
+                for (int i = 0; i < n - 1; i++)
+                    for (int j = i + 1; j < n; j++) {
+                        ResonanceBatch expected = inDegrees.getResonanceFor(i, j), actual = inSeconds.getResonanceFor(i, j);
+                        String pair = "%s, пара %d-%d".formatted(storage, i, j);
+                        assertEquals(expected.getArc(), actual.getArc(), 1e-9);
+                        // аспекты с равным зазором в угловых секундах в double могут
+                        // разойтись на ошибку округления и поменяться местами, поэтому
+                        // аспекты сверяются по резонансным числам
+                        AspectList expectedAspects = expected.getAspects(), actualAspects = actual.getAspects();
+                        assertEquals(expectedAspects.size(), actualAspects.size(), pair);
+                        int[] expectedOrder = byNumeric(expectedAspects), actualOrder = byNumeric(actualAspects);
+                        for (int k = 0; k < expectedOrder.length; k++) {
+                            int e = expectedOrder[k], a = actualOrder[k];
+                            assertEquals(expectedAspects.numeric(e), actualAspects.numeric(a), pair);
+                            assertEquals(expectedAspects.multiplicity(e), actualAspects.multiplicity(a), pair);
+                            assertEquals(expectedAspects.clearance(e), actualAspects.clearance(a), 1e-7);
+                            assertDepthMatches(expectedAspects.depth(e), actualAspects.depth(a),
+                                    actual.getOrb() / actualAspects.clearance(a), pair);
+                        }
+                    }
+                for (List<Chart> combination : inDegrees.heavenCombinations(false))
+                    for (int h = 1; h <= inDegrees.getEdgeHarmonic(); h++)
+                        assertEquals(inDegrees.findPatterns(h, combination).stream().map(Pattern::getConnectivityReport).toList(),
+                                inSeconds.findPatterns(h, combination).stream().map(Pattern::getConnectivityReport).toList(),
+                                "%s, гармоника %d".formatted(storage, h));
+            }
+    }
+
+    private static int[] byNumeric(AspectList aspects) {
+        return IntStream.range(0, aspects.size())
+                .boxed()
+                .sorted(Comparator.comparingInt(aspects::numeric))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * Глубины совпадают, кроме случая, когда орбис укладывается в зазор ровно целое число
+     * раз: там зазор в {@code double} может оказаться на ошибку округления больше точного
+     * и глубина — на единицу меньше, а в угловых секундах она точна.
+     */
+    private static void assertDepthMatches(int inDegrees, int inSeconds, double ratio, String pair) {
+        if (inDegrees == inSeconds) return;
+        long whole = Math.round(ratio);
+        assertTrue(Math.abs(ratio - whole) < 1e-9 && inSeconds == whole && inDegrees == whole - 1,
+                "%s: глубина %d против %d при отношении %s".formatted(pair, inDegrees, inSeconds, ratio));
+    }
+}
@@ -0,0 +1,60 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.swetophor.astrowidjaspring.model.MatrixFixture.*;
+
+class AstraUpdateTest {
+
+    @Test
+    void updates_matchFreshMatrix() {
+        for (MatrixStorage storage : MatrixStorage.values())
+            for (MatrixBuild build : new MatrixBuild[]{MatrixBuild.SEQUENTIAL, MatrixBuild.LAZY}) {
+                Chart[] charts = charts();
+                try (AstroMatrix matrix = new AstroMatrix(storage, build, charts)) {
+                    // паттерны и графы уже найдены до изменений и должны быть сброшены ими
+                    snapshot(matrix);
+
+                    matrix.moveAstra(charts[0].getAstras().get(3), 123.456);
+                    assertSameMatrix(reference(charts), matrix);
+
+                    matrix.addAstra(charts[1], new Astra("B+", 243, 27, 5));
+                    assertSameMatrix(reference(charts), matrix);
+
+                    matrix.removeAstra(charts[0].getAstras().get(5));
+                    assertSameMatrix(reference(charts), matrix);
+
+                    matrix.moveAstra(charts[1].getAstras().get(0), 3.5);
+                    matrix.removeAstra(charts[1].getAstras().get(2));
+                    matrix.addAstra(charts[0], new Astra("A+", 63, 30));
+                    assertSameMatrix(reference(charts), matrix);
+                }
+            }
+    }
+
+    @Test
+    void moveAstra_rewritesOnlyItsRowAndColumn() {
+        Chart[] charts = charts();
+        try (AstroMatrix matrix = new AstroMatrix(MatrixStorage.OBJECTS, MatrixBuild.SEQUENTIAL, charts)) {
+            ResonanceStore store = matrix.getStore();
+            int n = matrix.getAllAstras().size();
+            ResonanceBatch[][] before = new ResonanceBatch[n][n];
+            for (int i = 0; i < n - 1; i++)
+                for (int j = i + 1; j < n; j++)
+                    before[i][j] = store.read(i, j);
+
+            Astra moved = charts[1].getAstras().get(6);
+            int k = matrix.slotOf(moved);
+            matrix.moveAstra(moved, 301.5);
+            for (int i = 0; i < n - 1; i++)
+                for (int j = i + 1; j < n; j++)
+                    if (i == k || j == k)
+                        assertNotSame(before[i][j], store.read(i, j));
+                    else
+                        assertSame(before[i][j], store.read(i, j));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.config.Settings;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.swetophor.astrowidjaspring.model.MatrixFixture.*;
+
+class EdgeHarmonicChangeTest {
+
+    private final int edgeHarmonic = Settings.getEdgeHarmonic();
+
+    @AfterEach
+    void restoreSettings() {
+        Settings.setEdgeHarmonic(edgeHarmonic);
+    }
+
+    @Test
+    void edgeHarmonicChange_matchesMatrixBuiltAtThatEdge() {
+        for (MatrixStorage storage : MatrixStorage.values())
+            // крайние гармоники по очереди: при построении и после каждой смены
+            for (int[] edges : new int[][]{{36, 108}, {108, 36, 72}, {24, 200}}) {
+                Chart[] charts = charts();
+                Settings.setEdgeHarmonic(edges[0]);
+                try (AstroMatrix matrix = new AstroMatrix(storage, MatrixBuild.SEQUENTIAL, charts)) {
+                    snapshot(matrix);
+                    for (int k = 1; k < edges.length; k++) {
+                        matrix.setEdgeHarmonic(edges[k]);
+                        Settings.setEdgeHarmonic(edges[k]);
+                        assertEquals(edges[k], matrix.getEdgeHarmonic());
+                        assertSameMatrix(reference(charts), matrix);
+                    }
+                }
+            }
+    }
+
+    @Test
+    void loweredEdge_keepsComputedCoverage() {
+        Settings.setEdgeHarmonic(108);
+        try (AstroMatrix matrix = new AstroMatrix(MatrixStorage.PACKED, MatrixBuild.SEQUENTIAL, charts())) {
+            ResonanceStore computed = matrix.getStore();
+
+            // понижение только фильтрует выдачу, обратное повышение обходится без расчёта
+            matrix.setEdgeHarmonic(36);
+            assertEquals(108, matrix.getProfile().edgeHarmonic());
+            matrix.setEdgeHarmonic(72);
+            assertEquals(108, matrix.getProfile().edgeHarmonic());
+            assertSame(computed, matrix.getStore());
+
+            // повышение сверх рассчитанного досчитывает пары в новое хранилище
+            matrix.setEdgeHarmonic(144);
+            assertEquals(144, matrix.getProfile().edgeHarmonic());
+            assertNotSame(computed, matrix.getStore());
+
+            assertThrows(IllegalArgumentException.class, () -> matrix.setEdgeHarmonic(0));
+        }
+    }
+}
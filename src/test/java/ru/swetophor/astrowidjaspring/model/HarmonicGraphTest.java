@@ -0,0 +1,54 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.swetophor.astrowidjaspring.model.MatrixFixture.*;
+
+class HarmonicGraphTest {
+
+    @Test
+    void graphsBuiltInOnePass_matchGraphsBuiltPerHarmonic() {
+        Chart[] charts = charts();
+        for (MatrixStorage storage : MatrixStorage.values())
+            for (MatrixBuild build : MatrixBuild.values())
+                try (AstroMatrix onePass = new AstroMatrix(storage, build, charts);
+                     AstroMatrix perHarmonic = new AstroMatrix(storage, build, charts)) {
+                    // поиск паттернов строит графы всех гармоник за один проход по парам
+                    onePass.buildPatternTable();
+                    for (int h = 1; h <= onePass.getEdgeHarmonic(); h++)
+                        assertEquals(describe(perHarmonic.getHarmonicGraph(h)), describe(onePass.getHarmonicGraph(h)),
+                                "%s %s, гармоника %d".formatted(storage, build, h));
+                }
+    }
+
+    @Test
+    void graphEdges_arePairsResonatingInHarmonic() {
+        AstroMatrix matrix = reference(charts());
+        int n = matrix.getAllAstras().size();
+        for (int h = 1; h <= matrix.getEdgeHarmonic(); h++) {
+            HarmonicGraph graph = matrix.getHarmonicGraph(h);
+            assertEquals(h, graph.getHarmonic());
+            assertEquals(n, graph.size());
+            int edges = 0;
+            for (int v = 0; v < n; v++) {
+                // соседи по возрастанию номеров — ровно те астры, с которыми пара связана
+                List<Integer> expected = new ArrayList<>();
+                for (int u = 0; u < n; u++)
+                    if (u != v && matrix.getResonanceFor(Math.min(u, v), Math.max(u, v)).hasHarmonicResonance(h))
+                        expected.add(u);
+                List<Integer> actual = new ArrayList<>();
+                for (int e = graph.start(v); e < graph.end(v); e++)
+                    actual.add(graph.neighbour(e));
+                assertEquals(expected, actual, "гармоника %d, астра %d".formatted(h, v));
+                assertEquals(expected.size(), graph.degree(v));
+                edges += expected.size();
+            }
+            assertEquals(edges / 2, graph.edgeCount());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static java.lang.Math.abs;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HarmonicsTest {
+
+    /**
+     * Прежний перебор множителей, с которым сверяется {@link Harmonics#findMultiplier(int, double, double)}.
+     */
+    private static int linearSearch(int resonance, double arc, double orb) {
+        double single = 360.0 / resonance;
+        int multiplier = 1;
+        double orbHere = orb / resonance;
+        while (multiplier < resonance / 2)
+            if (abs(single * multiplier - arc) < orbHere) break;
+            else multiplier++;
+        return multiplier;
+    }
+
+    @Test
+    void findMultiplier_findsNearestMultiple() {
+        assertEquals(3, Harmonics.findMultiplier(8, 135.5, 12));
+        assertEquals(1, Harmonics.findMultiplier(8, 44, 12));
+        assertEquals(2, Harmonics.findMultiplier(5, 144.2, 12));
+    }
+
+    @Test
+    void findMultiplier_matchesLinearSearchOnRandomArcs() {
+        Random random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            int resonance = 1 + random.nextInt(300);
+            double arc = random.nextDouble() * 180;
+            double orb = random.nextInt(10) == 0 ? 180 + random.nextDouble() * 180 : random.nextDouble() * 30;
+            assertEquals(linearSearch(resonance, arc, orb), Harmonics.findMultiplier(resonance, arc, orb),
+                    "гармоника %d, дуга %s, орбис %s".formatted(resonance, arc, orb));
+        }
+    }
+
+    @Test
+    void findMultiplier_matchesLinearSearchNearExactAspects() {
+        Random random = new Random(12);
+        for (int resonance = 1; resonance <= 120; resonance++)
+            for (int multiplier = 0; multiplier <= resonance / 2; multiplier++)
+                for (int k = 0; k < 10; k++) {
+                    double orb = random.nextDouble() * 15;
+                    double arc = Math.min(180, Math.max(0,
+                            360.0 * multiplier / resonance + (random.nextDouble() - 0.5) * 2 * orb / resonance));
+                    assertEquals(linearSearch(resonance, arc, orb), Harmonics.findMultiplier(resonance, arc, orb),
+                            "гармоника %d, дуга %s, орбис %s".formatted(resonance, arc, orb));
+                }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.swetophor.astrowidjaspring.model.MatrixFixture.*;
+
+class LazyBuildTest {
+
+    @Test
+    void lazyBuild_matchesSequential() {
+        Chart[] charts = charts();
+        for (MatrixStorage storage : MatrixStorage.values())
+            try (AstroMatrix matrix = new AstroMatrix(storage, MatrixBuild.LAZY, charts)) {
+                assertSameMatrix(reference(charts), matrix);
+            }
+    }
+
+    @Test
+    void lazyBuild_computesOnlyRequestedPairs() {
+        Chart[] charts = charts();
+        try (AstroMatrix matrix = new AstroMatrix(MatrixStorage.OBJECTS, MatrixBuild.LAZY, charts)) {
+            ResonanceStore store = matrix.getStore();
+            int n = matrix.getAllAstras().size();
+            for (int i = 0; i < n - 1; i++)
+                for (int j = i + 1; j < n; j++)
+                    assertNull(store.read(i, j), "пара %d-%d рассчитана до обращения".formatted(i, j));
+
+            assertEquals(describe(3, 17, reference(charts).getResonanceFor(3, 17)),
+                    describe(3, 17, matrix.getResonanceFor(3, 17)));
+            for (int i = 0; i < n - 1; i++)
+                for (int j = i + 1; j < n; j++)
+                    assertEquals(i == 3 && j == 17, store.read(i, j) != null, "пара %d-%d".formatted(i, j));
+        }
+    }
+
+    @Test
+    void lazyBuild_matchesSequentialUnderConcurrentAccess() {
+        Chart[] charts = {randomChart("A", 40, 3), randomChart("B", 30, 4)};
+        AstroMatrix expected = reference(charts);
+        int n = expected.getAllAstras().size();
+        for (MatrixStorage storage : MatrixStorage.values())
+            try (AstroMatrix matrix = new AstroMatrix(storage, MatrixBuild.LAZY, charts)) {
+                // пары запрашиваются из многих потоков вперемешку: одни рассчитываются,
+                // пока другие уже читаются
+                List<String> pairs = IntStream.range(0, n * n).parallel()
+                        .filter(k -> k / n < k % n)
+                        .mapToObj(k -> describe(k / n, k % n, matrix.getResonanceFor(k / n, k % n)))
+                        .toList();
+                assertEquals(pairs(expected), pairs);
+                assertSameMatrix(expected, matrix);
+            }
+    }
+}
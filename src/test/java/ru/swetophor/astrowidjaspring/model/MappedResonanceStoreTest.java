@@ -0,0 +1,80 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.config.Environments;
+import ru.swetophor.astrowidjaspring.config.Settings;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.swetophor.astrowidjaspring.model.MatrixFixture.*;
+
+class MappedResonanceStoreTest {
+
+    private final int edgeHarmonic = Settings.getEdgeHarmonic();
+    private final boolean persistence = Settings.isMatrixPersistence();
+    private final Path appDir = Environments.appDir;
+    private Path directory;
+
+    @BeforeEach
+    void useTemporaryAppDir() throws IOException {
+        directory = Files.createTempDirectory("matrices");
+        Environments.appDir = directory;
+        Settings.enableMatrixPersistence();
+    }
+
+    @AfterEach
+    void restoreSettings() throws IOException {
+        Settings.setEdgeHarmonic(edgeHarmonic);
+        if (persistence) Settings.enableMatrixPersistence();
+        else Settings.disableMatrixPersistence();
+        Environments.appDir = appDir;
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(file);
+        }
+    }
+
+    @Test
+    void mappedStore_roundTripMatchesObjects() {
+        for (MatrixStorage storage : new MatrixStorage[]{MatrixStorage.PACKED, MatrixStorage.SPARSE}) {
+            Settings.enableMatrixPersistence();
+            Chart[] charts = charts();
+            new AstroMatrix(storage, MatrixBuild.SEQUENTIAL, charts).close();
+            try (AstroMatrix matrix = new AstroMatrix(storage, MatrixBuild.SEQUENTIAL, charts)) {
+                assertTrue(matrix.getStore() instanceof MappedResonanceStore, "Матрица не открыта из файла");
+                Settings.disableMatrixPersistence();
+                assertSameMatrix(reference(charts), matrix);
+
+                // первая запись переносит пары из файла в обычное хранилище
+                matrix.moveAstra(charts[1].getAstras().get(4), 200.25);
+                assertSameMatrix(reference(charts), matrix);
+            }
+        }
+    }
+
+    @Test
+    void savedMatrix_isNotOpenedForAnotherProfile() throws IOException {
+        Chart[] charts = charts();
+        Settings.setEdgeHarmonic(36);
+        new AstroMatrix(MatrixStorage.PACKED, MatrixBuild.SEQUENTIAL, charts).close();
+        try (Stream<Path> files = Files.list(directory.resolve(MappedResonanceStore.MATRICES_DIR))) {
+            assertEquals(1, files.count());
+        }
+
+        // файл ищется по астрам и профилю: при другой крайней гармонике он не подходит
+        Settings.setEdgeHarmonic(72);
+        try (AstroMatrix matrix = new AstroMatrix(MatrixStorage.PACKED, MatrixBuild.SEQUENTIAL, charts)) {
+            assertFalse(matrix.getStore() instanceof MappedResonanceStore);
+            Settings.disableMatrixPersistence();
+            assertSameMatrix(reference(charts), matrix);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import ru.swetophor.astrowidjaspring.model.astro.AspectList;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Общие для тестов Матрицы карты и снимки: Матрица, построенная иначе, сверяется
+ * с Матрицей, построенной объектами в одном потоке.
+ */
+final class MatrixFixture {
+
+    private MatrixFixture() {
+    }
+
+    static Chart randomChart(String name, int size, long seed) {
+        Random random = new Random(seed);
+        List<Astra> astras = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+            astras.add(new Astra(name + i, random.nextInt(360), random.nextInt(60), random.nextInt(60)));
+        return new Chart(name, astras);
+    }
+
+    static Chart[] charts() {
+        return new Chart[]{randomChart("A", 14, 1), randomChart("B", 11, 2)};
+    }
+
+    static AstroMatrix reference(Chart... charts) {
+        return new AstroMatrix(MatrixStorage.OBJECTS, MatrixBuild.SEQUENTIAL, charts);
+    }
+
+    /**
+     * Снимок Матрицы: дуга, орбис и аспекты каждой пары, связи каждой гармоники
+     * до крайней и отчёт о паттернах.
+     */
+    static List<String> snapshot(AstroMatrix matrix) {
+        List<String> lines = pairs(matrix);
+        for (int h = 1; h <= matrix.getEdgeHarmonic(); h++)
+            lines.addAll(describe(matrix.getHarmonicGraph(h)));
+        lines.add(matrix.buildPatternTable().getPatternReport(true));
+        return lines;
+    }
+
+    /**
+     * @return описания всех пар Матрицы в порядке обхода треугольника.
+     */
+    static List<String> pairs(AstroMatrix matrix) {
+        List<String> lines = new ArrayList<>();
+        int n = matrix.getAllAstras().size();
+        for (int i = 0; i < n - 1; i++)
+            for (int j = i + 1; j < n; j++)
+                lines.add(describe(i, j, matrix.getResonanceFor(i, j)));
+        return lines;
+    }
+
+    static String describe(int i, int j, ResonanceBatch pair) {
+        StringBuilder line = new StringBuilder("%d-%d %s %s:".formatted(i, j, pair.getArc(), pair.getOrb()));
+        AspectList aspects = pair.getAspects();
+        for (int a = 0; a < aspects.size(); a++)
+            line.append(' ').append(aspects.code(a)).append('/').append(aspects.clearance(a));
+        return line.toString();
+    }
+
+    static List<String> describe(HarmonicGraph graph) {
+        List<String> lines = new ArrayList<>();
+        for (int v = 0; v < graph.size(); v++) {
+            StringBuilder line = new StringBuilder("%d: %d ->".formatted(graph.getHarmonic(), v));
+            for (int e = graph.start(v); e < graph.end(v); e++)
+                line.append(' ').append(graph.neighbour(e));
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    static List<String> describe(List<Pattern> patterns) {
+        return patterns.stream()
+                .map(p -> p.getConnectivityReport() + " " + p.getAverageStrength())
+                .toList();
+    }
+
+    static void assertSameMatrix(AstroMatrix expected, AstroMatrix actual) {
+        assertEquals(snapshot(expected), snapshot(actual));
+    }
+
+    /**
+     * Сверяет Матрицу, построенную с указанным хранилищем, с эталонной.
+     */
+    static void assertStoreMatches(MatrixStorage storage) {
+        Chart[] charts = charts();
+        try (AstroMatrix matrix = new AstroMatrix(storage, MatrixBuild.SEQUENTIAL, charts)) {
+            assertSameMatrix(reference(charts), matrix);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.swetophor.astrowidjaspring.model.MatrixFixture.*;
+
+class OffHeapResonanceStoreTest {
+
+    @Test
+    void offHeapStore_matchesObjects() {
+        assertStoreMatches(MatrixStorage.OFF_HEAP);
+    }
+
+    @Test
+    void offHeapTables_outliveClosedMatrix() {
+        Chart[] charts = charts();
+        AstroMatrix expected = reference(charts);
+        PatternTable patterns;
+        AspectTable aspects;
+        try (AstroMatrix matrix = new AstroMatrix(MatrixStorage.OFF_HEAP, MatrixBuild.SEQUENTIAL, charts)) {
+            patterns = matrix.buildPatternTable();
+            aspects = matrix.buildAspectTable();
+        }
+        assertEquals(expected.buildPatternTable().getPatternReport(true), patterns.getPatternReport(true));
+        assertEquals(expected.buildAspectTable().getAspectReport(), aspects.getAspectReport());
+    }
+
+    @Test
+    void closedMatrix_releasesOffHeapMemory() {
+        AstroMatrix matrix = new AstroMatrix(MatrixStorage.OFF_HEAP, MatrixBuild.SEQUENTIAL, charts());
+        ResonanceStore store = matrix.getStore();
+        assertTrue(store instanceof OffHeapResonanceStore);
+        store.read(0, 1);
+        matrix.close();
+        // память освобождена: обращение к ней запрещено, повторное закрытие безвредно
+        assertThrows(IllegalStateException.class, () -> store.read(0, 1));
+        assertThrows(IllegalStateException.class, () -> store.resonates(0, 1, 1));
+        matrix.close();
+    }
+}
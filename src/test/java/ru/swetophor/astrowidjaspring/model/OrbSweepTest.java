@@ -0,0 +1,103 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.config.Settings;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrbSweepTest {
+
+    private final int edgeHarmonic = Settings.getEdgeHarmonic();
+    private final int orbDivisor = Settings.getOrbDivisor();
+    private final boolean halfOrbs = Settings.isHalfOrbsForDoubles();
+    private final boolean arcSecondMode = Settings.isArcSecondMode();
+
+    @AfterEach
+    void restoreSettings() {
+        Settings.setEdgeHarmonic(edgeHarmonic);
+        Settings.setOrbDivider(orbDivisor);
+        if (halfOrbs) Settings.enableHalfOrbForDoubles();
+        else Settings.disableHalfOrbForDoubles();
+        if (arcSecondMode) Settings.enableArcSecondMode();
+        else Settings.disableArcSecondMode();
+    }
+
+    private static Chart randomChart(String name, int size, long seed) {
+        Random random = new Random(seed);
+        List<Astra> astras = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+            astras.add(new Astra(name + i, random.nextInt(360), random.nextInt(60), random.nextDouble() * 60));
+        return new Chart(name, astras);
+    }
+
+    /**
+     * Сверяет итоги прогона при нескольких делителях с Матрицей, заново построенной
+     * при каждом из них.
+     */
+    private static void assertSweepMatchesMatrices(Chart... charts) {
+        OrbSweep sweep = new OrbSweep(5, 45, charts);
+        assertEquals(41, sweep.getSummaries().size());
+        for (int divisor : new int[]{5, 8, 12, 19, 30, 45}) {
+            OrbSweep.DivisorSummary summary = sweep.getSummaries().get(divisor - 5);
+            assertEquals(divisor, summary.divisor());
+            Settings.setOrbDivider(divisor);
+            AstroMatrix matrix = new AstroMatrix(charts);
+            assertEquals(Settings.getPrimalOrb(), summary.primalOrb(), 0.0);
+
+            int n = matrix.getAllAstras().size(), aspects = 0, resonantPairs = 0;
+            for (int i = 0; i < n - 1; i++)
+                for (int j = i + 1; j < n; j++) {
+                    int count = matrix.getResonanceFor(i, j).getAspects().size();
+                    aspects += count;
+                    if (count > 0) resonantPairs++;
+                }
+            int patterns = 0;
+            double strengths = 0.0;
+            for (int h = 1; h <= matrix.getEdgeHarmonic(); h++)
+                for (Pattern pattern : matrix.findPatterns(h, Arrays.asList(charts))) {
+                    patterns++;
+                    strengths += pattern.getAverageStrength();
+                }
+            String at = "делитель %d".formatted(divisor);
+            assertEquals(aspects, summary.aspects(), at);
+            assertEquals(resonantPairs, summary.resonantPairs(), at);
+            assertEquals(patterns, summary.patterns(), at);
+            assertEquals(patterns == 0 ? 0.0 : strengths / patterns, summary.averageStrength(), 1e-6);
+        }
+    }
+
+    @Test
+    void sweep_matchesMatrixBuiltAtEachDivisor() {
+        Settings.setEdgeHarmonic(72);
+        Settings.enableHalfOrbForDoubles();
+        Settings.disableArcSecondMode();
+        assertSweepMatchesMatrices(randomChart("A", 16, 221));
+        assertSweepMatchesMatrices(randomChart("A", 12, 222), randomChart("B", 10, 223));
+        Settings.disableHalfOrbForDoubles();
+        assertSweepMatchesMatrices(randomChart("A", 12, 222), randomChart("B", 10, 223));
+    }
+
+    @Test
+    void sweepInArcSeconds_matchesMatrixBuiltInArcSeconds() {
+        Settings.setEdgeHarmonic(72);
+        Settings.enableHalfOrbForDoubles();
+        Settings.enableArcSecondMode();
+        assertSweepMatchesMatrices(randomChart("A", 16, 224));
+        assertSweepMatchesMatrices(randomChart("A", 12, 225), randomChart("B", 10, 226));
+    }
+
+    @Test
+    void sweep_rejectsEmptyRange() {
+        Chart chart = randomChart("A", 4, 227);
+        assertThrows(IllegalArgumentException.class, () -> new OrbSweep(0, 10, chart));
+        assertThrows(IllegalArgumentException.class, () -> new OrbSweep(12, 11, chart));
+    }
+}
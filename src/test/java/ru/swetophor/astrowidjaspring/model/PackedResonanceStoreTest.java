@@ -0,0 +1,38 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.swetophor.astrowidjaspring.model.MatrixFixture.*;
+
+class PackedResonanceStoreTest {
+
+    @Test
+    void packedStore_matchesObjects() {
+        assertStoreMatches(MatrixStorage.PACKED);
+    }
+
+    @Test
+    void rewrittenPairs_survivePoolCompaction() {
+        Chart[] charts = charts();
+        try (AstroMatrix matrix = new AstroMatrix(MatrixStorage.PACKED, MatrixBuild.SEQUENTIAL, charts)) {
+            assertTrue(matrix.getStore() instanceof PackedResonanceStore);
+            List<String> before = pairs(matrix);
+            ResonanceBatch kept = matrix.getResonanceFor(0, 1);
+
+            // повторные записи рядов копят мусор в пуле, пока он не уплотнится
+            List<Astra> moved = charts[1].getAstras();
+            for (int step = 0; step < 40; step++)
+                matrix.moveAstra(moved.get(step % moved.size()), step * 37.25);
+            assertEquals(pairs(reference(charts)), pairs(matrix));
+            assertSameMatrix(reference(charts), matrix);
+
+            // прочитанная до уплотнения пара не задета переписыванием пула
+            assertEquals(before.get(0), describe(0, 1, kept));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.swetophor.astrowidjaspring.model.MatrixFixture.*;
+
+class ParallelBuildTest {
+
+    @Test
+    void parallelBuild_matchesSequential() {
+        Chart[] charts = charts();
+        for (MatrixStorage storage : MatrixStorage.values())
+            try (AstroMatrix matrix = new AstroMatrix(storage, MatrixBuild.PARALLEL, charts)) {
+                assertSameMatrix(reference(charts), matrix);
+            }
+    }
+
+    @Test
+    void parallelBuild_splitIntoManyTasks_matchesSequential() {
+        // столько пар, что треугольник делится на десятки кусков, границы которых
+        // приходятся на середины рядов
+        Chart[] charts = {randomChart("A", 70, 5), randomChart("B", 53, 6)};
+        AstroMatrix expected = reference(charts);
+        int n = expected.getAllAstras().size();
+        assertTrue((long) ResonanceStore.pairCount(n) * expected.getEdgeHarmonic() > 16L * (1 << 15));
+        for (MatrixStorage storage : MatrixStorage.values())
+            try (AstroMatrix matrix = new AstroMatrix(storage, MatrixBuild.PARALLEL, charts)) {
+                assertEquals(pairs(expected), pairs(matrix), storage.toString());
+            }
+    }
+}
@@ -0,0 +1,125 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.config.Settings;
+import ru.swetophor.astrowidjaspring.model.astro.AspectList;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatternDendrogramTest {
+
+    private final int orbDivisor = Settings.getOrbDivisor();
+    private final boolean halfOrbs = Settings.isHalfOrbsForDoubles();
+
+    @AfterEach
+    void restoreSettings() {
+        Settings.setOrbDivider(orbDivisor);
+        if (halfOrbs) Settings.enableHalfOrbForDoubles();
+        else Settings.disableHalfOrbForDoubles();
+    }
+
+    private static Chart randomChart(String name, int size, long seed) {
+        Random random = new Random(seed);
+        List<Astra> astras = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+            astras.add(new Astra(name + i, random.nextInt(360), random.nextInt(60), random.nextDouble() * 60));
+        return new Chart(name, astras);
+    }
+
+    /**
+     * Сверяет разрез дерева на первичном орбисе Матрицы с её паттернами. Связь Матрицы
+     * всегда есть и в дереве, так что каждый паттерн Матрицы лежит внутри паттерна дерева
+     * и его живого на этом орбисе узла. Пока дуга гармоники в пределах орбиса не обходит
+     * полукруг ({@code h · orb ≤ 180°}), связи совпадают, и паттерны Матрицы — это ровно
+     * паттерны дерева, в которых есть номинальный аспект гармоники.
+     */
+    private static void assertCutMatchesMatrix(int divisor, Chart... charts) {
+        Settings.setOrbDivider(divisor);
+        double orb = Settings.getPrimalOrb();
+        AstroMatrix matrix = new AstroMatrix(charts);
+        for (int h = 1; h <= 40; h++) {
+            PatternDendrogram dendrogram = new PatternDendrogram(h, charts);
+            List<Astra> astras = dendrogram.getAstras();
+            assertEquals(matrix.getAllAstras(), astras);
+            String at = "делитель %d, гармоника %d".formatted(divisor, h);
+            boolean exact = h * orb <= 180;
+
+            List<Set<Astra>> cut = dendrogram.patternsAt(orb).stream()
+                    .map(members -> (Set<Astra>) new HashSet<>(members))
+                    .toList();
+            List<Set<Astra>> found = new ArrayList<>();
+            for (Pattern pattern : matrix.findPatterns(h, Arrays.asList(charts))) {
+                Set<Astra> members = new HashSet<>(pattern.getAstrasByConnectivity());
+                found.add(members);
+                Set<Astra> node = liveNodeWith(dendrogram, members.iterator().next(), orb);
+                assertTrue(cut.contains(node), at + ": узел не совпадает с разрезом " + node);
+                if (exact) assertEquals(node, members, at);
+                else assertTrue(node.containsAll(members), at + ": паттерн Матрицы шире дерева " + members);
+            }
+            if (exact)
+                for (Set<Astra> members : cut)
+                    assertEquals(hasNominalAspect(matrix, members, h), found.contains(members), at + ": " + members);
+        }
+    }
+
+    /**
+     * @return астры узла слияния, образованного ниже орбиса и не поглощённого до него,
+     * в который входит астра.
+     */
+    private static Set<Astra> liveNodeWith(PatternDendrogram dendrogram, Astra astra, double orb) {
+        int n = dendrogram.getAstras().size();
+        for (int k = 0; k < dendrogram.getMerges().size(); k++) {
+            double formed = dendrogram.getMerges().get(k).orb();
+            if (formed < orb && formed + dendrogram.getPersistence(k) >= orb) {
+                List<Astra> members = dendrogram.membersOf(n + k);
+                if (members.contains(astra)) return new HashSet<>(members);
+            }
+        }
+        return Set.of(astra);
+    }
+
+    private static boolean hasNominalAspect(AstroMatrix matrix, Set<Astra> members, int harmonic) {
+        List<Astra> astras = matrix.getAllAstras();
+        for (int i = 0; i < astras.size() - 1; i++)
+            for (int j = i + 1; j < astras.size(); j++) {
+                if (!members.contains(astras.get(i)) || !members.contains(astras.get(j))) continue;
+                AspectList aspects = matrix.getResonanceFor(i, j).getAspects();
+                for (int a = 0; a < aspects.size(); a++)
+                    if (aspects.numeric(a) == harmonic) return true;
+            }
+        return false;
+    }
+
+    @Test
+    void patternsAt_matchMatrixPatternsOfOneChart() {
+        Chart chart = randomChart("A", 18, 231);
+        for (int divisor : new int[]{12, 60, 120})
+            assertCutMatchesMatrix(divisor, chart);
+    }
+
+    @Test
+    void patternsAt_matchMatrixPatternsAcrossChartsWithHalfOrbs() {
+        Settings.enableHalfOrbForDoubles();
+        Chart[] charts = {randomChart("A", 12, 232), randomChart("B", 10, 233)};
+        for (int divisor : new int[]{12, 60, 120})
+            assertCutMatchesMatrix(divisor, charts);
+    }
+
+    @Test
+    void patternsAt_matchMatrixPatternsAcrossChartsWithFullOrbs() {
+        Settings.disableHalfOrbForDoubles();
+        Chart[] charts = {randomChart("A", 12, 232), randomChart("B", 10, 233)};
+        for (int divisor : new int[]{12, 60, 120})
+            assertCutMatchesMatrix(divisor, charts);
+    }
+}
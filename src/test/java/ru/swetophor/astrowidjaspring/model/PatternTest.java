@@ -0,0 +1,40 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("deprecation")
+class PatternTest {
+
+    private static Chart chart() {
+        return new Chart("Тест", List.of(
+                new Astra("A", 0, 0, 0),
+                new Astra("B", 120, 1, 0),
+                new Astra("C", 45, 0, 0)));
+    }
+
+    @Test
+    void isValid_checksNominalResonanceThroughHost() {
+        Chart chart = chart();
+        List<Astra> astras = chart.getAstras();
+        try (AstroMatrix matrix = new AstroMatrix(chart)) {
+            assertTrue(new Pattern(3, astras.subList(0, 2), matrix).isValid());
+            assertFalse(new Pattern(5, astras.subList(0, 2), matrix).isValid());
+            assertFalse(new Pattern(3, astras.subList(0, 1), matrix).isValid());
+            for (Pattern found : matrix.findPatterns(3, List.of(chart)))
+                assertTrue(new Pattern(3, found.getAstrasByConnectivity(), matrix).isValid());
+        }
+    }
+
+    @Test
+    void isValid_requiresHost() {
+        Pattern pattern = new Pattern(3, chart().getAstras().subList(0, 2));
+        assertNull(pattern.getAnalysis());
+        assertThrows(IllegalStateException.class, pattern::isValid);
+    }
+}
@@ -0,0 +1,79 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.config.Settings;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimeSieveTest {
+
+    private final int edgeHarmonic = Settings.getEdgeHarmonic();
+
+    @AfterEach
+    void restoreSettings() {
+        Settings.setEdgeHarmonic(edgeHarmonic);
+    }
+
+    private static List<Integer> naiveFactors(int number) {
+        if (number <= 1) return List.of(number);
+        List<Integer> factors = new ArrayList<>();
+        for (int divider = 2; (long) divider * divider <= number; divider++)
+            while (number % divider == 0) {
+                factors.add(divider);
+                number /= divider;
+            }
+        if (number > 1) factors.add(number);
+        factors.sort(Comparator.reverseOrder());
+        return factors;
+    }
+
+    private static void assertFactorsMatch(int number) {
+        List<Integer> expected = naiveFactors(number);
+        assertEquals(expected, PrimeSieve.factorize(number), "разложение %d".formatted(number));
+        for (int multiplier : new int[]{0, 1, 2, 3, expected.get(0), expected.get(expected.size() - 1),
+                number, number + 1})
+            assertEquals(expected.contains(multiplier), PrimeSieve.hasMultiplier(number, multiplier),
+                    "%d в разложении %d".formatted(multiplier, number));
+    }
+
+    @Test
+    void factorize_matchesNaiveFactorizationBelowCeiling() {
+        Settings.setEdgeHarmonic(108);
+        for (int number = 0; number <= PrimeSieve.ceiling(); number++)
+            assertFactorsMatch(number);
+    }
+
+    @Test
+    void factorize_matchesNaiveFactorizationAboveCeiling() {
+        Settings.setEdgeHarmonic(108);
+        Random random = new Random(13);
+        for (int i = 0; i < 2000; i++)
+            assertFactorsMatch(PrimeSieve.ceiling() + 1 + random.nextInt(Integer.MAX_VALUE - PrimeSieve.ceiling() - 1));
+        for (int number : new int[]{2_147_483_647, 2_147_483_646, 2 * 46_337 * 23_167, 65_536 * 32_767})
+            assertFactorsMatch(number);
+    }
+
+    @Test
+    void ceiling_followsEdgeHarmonic() {
+        Settings.setEdgeHarmonic(108);
+        int low = PrimeSieve.ceiling();
+        Settings.setEdgeHarmonic(12_000);
+        int high = PrimeSieve.ceiling();
+        assertEquals(96_000, high);
+        assertTrue(low < high);
+
+        // после подъёма крайней гармоники число под новым потолком раскладывается решетом
+        // и его разложение запоминается, а выше потолка — каждый раз заново
+        int number = high - 7;
+        assertFactorsMatch(number);
+        assertSame(PrimeSieve.factorize(number), PrimeSieve.factorize(number));
+        assertNotSame(PrimeSieve.factorize(high + 1), PrimeSieve.factorize(high + 1));
+        assertFactorsMatch(high + 1);
+    }
+}
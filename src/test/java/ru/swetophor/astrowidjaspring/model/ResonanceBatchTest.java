@@ -0,0 +1,119 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.model.astro.AspectList;
+import ru.swetophor.astrowidjaspring.model.astro.Astra;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.swetophor.astrowidjaspring.utils.CelestialMechanics.normalizeArc;
+
+class ResonanceBatchTest {
+
+    /**
+     * Прежний отбор гармоник: каждая гармоника сверяется со всеми уже взятыми,
+     * как делал {@code isNewSimple} до решётки делителей блока.
+     * @return взятые гармоники по возрастанию.
+     */
+    private static List<Integer> scanAspects(double arc, double orb, int edge) {
+        List<Integer> taken = new ArrayList<>();
+        for (int h = 1; h <= edge; h++)
+            if (normalizeArc(arc * h) < orb && isNewSimpleByScan(h, arc, orb, taken))
+                taken.add(h);
+        return taken;
+    }
+
+    private static boolean isNewSimpleByScan(int aNewNumber, double arc, double orb, List<Integer> taken) {
+        boolean isConjunction = false;
+        for (int aPreviousHarmonic : taken) {
+            if (aPreviousHarmonic == 1)
+                isConjunction = true;
+            if (aNewNumber % aPreviousHarmonic != 0)
+                continue;
+            if (isConjunction &&
+                    arc > orb / aNewNumber &&
+                    Harmonics.findMultiplier(aNewNumber, arc, orb) == 1)
+                continue;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Гармоники, взятые нынешним отбором, когда кандидатами служат все гармоники подряд.
+     */
+    private static List<Integer> blockAspects(double arc, double orb, int edge) {
+        ResonanceBlock block = new ResonanceBlock(edge);
+        block.openPair(0, 1, arc, orb);
+        int[] all = IntStream.rangeClosed(1, edge).toArray();
+        ResonanceBatch.collectAspects(arc, orb, all, 0, all.length, block);
+        List<Integer> taken = new ArrayList<>();
+        for (int a = block.aspectsFrom(0); a < block.aspectsTo(0); a++)
+            taken.add(block.numeric(a));
+        return taken;
+    }
+
+    @Test
+    void isNewSimple_matchesScanOfTakenAspectsOnRandomArcs() {
+        Random random = new Random(15);
+        for (int i = 0; i < 20_000; i++) {
+            int edge = 1 + random.nextInt(random.nextBoolean() ? 40 : 400);
+            double orb = 0.5 + random.nextDouble() * 15;
+            // каждая четвёртая дуга в орбисе соединения, чтобы проверялась и его ветвь
+            double arc = i % 4 == 0 ? random.nextDouble() * orb : random.nextDouble() * 180;
+            assertEquals(scanAspects(arc, orb, edge), blockAspects(arc, orb, edge),
+                    "дуга %s, орбис %s, до %d".formatted(arc, orb, edge));
+        }
+    }
+
+    @Test
+    void isNewSimple_matchesScanOfTakenAspectsNearExactAspects() {
+        Random random = new Random(16);
+        for (int q = 1; q <= 60; q++)
+            for (int p = 0; p <= q / 2; p++)
+                for (int k = 0; k < 5; k++) {
+                    double orb = 1 + random.nextDouble() * 12;
+                    double arc = Math.min(180, Math.max(0,
+                            360.0 * p / q + (random.nextDouble() - 0.5) * 2 * orb / q));
+                    assertEquals(scanAspects(arc, orb, 108), blockAspects(arc, orb, 108),
+                            "дуга %s (%d/%d), орбис %s".formatted(arc, p, q, orb));
+                }
+    }
+
+    @Test
+    void isNewSimple_takesMultiplesOfConjunctionOnlyOutsideItsOrb() {
+        // 2° при орбисе 12: соединение проходит до 6-й гармоники, дальше идут новые аспекты
+        List<Integer> taken = blockAspects(2, 12, 36);
+        assertEquals(1, (int) taken.get(0));
+        assertTrue(taken.stream().skip(1).allMatch(h -> h > 6), taken.toString());
+        assertEquals(scanAspects(2, 12, 36), taken);
+    }
+
+    @Test
+    void extendTo_matchesBatchComputedToNewEdge() {
+        Random random = new Random(17);
+        List<Astra> astras = new ArrayList<>();
+        for (int i = 0; i < 12; i++)
+            astras.add(new Astra("A" + i, random.nextInt(360), random.nextInt(60), random.nextInt(60)));
+        new Chart("A", astras);
+        for (int i = 0; i < astras.size() - 1; i++)
+            for (int j = i + 1; j < astras.size(); j++) {
+                ResonanceBatch extended = new ResonanceBatch(astras.get(i), astras.get(j), 12, 36);
+                extended.extendTo(144);
+                ResonanceBatch fresh = new ResonanceBatch(astras.get(i), astras.get(j), 12, 144);
+                assertEquals(codes(fresh.getAspects()), codes(extended.getAspects()), "%d-%d".formatted(i, j));
+            }
+    }
+
+    private static List<String> codes(AspectList aspects) {
+        List<String> codes = new ArrayList<>();
+        for (int a = 0; a < aspects.size(); a++)
+            codes.add(aspects.code(a) + "/" + aspects.clearance(a));
+        return codes;
+    }
+}
@@ -0,0 +1,36 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResonanceStoreTest {
+
+    @Test
+    void pairIndex_walksTriangleRowByRow() {
+        int n = 9, expected = 0;
+        for (int i = 0; i < n - 1; i++)
+            for (int j = i + 1; j < n; j++) {
+                assertEquals(expected, ResonanceStore.pairIndex(i, j, n));
+                assertEquals(i, ResonanceStore.rowOf(expected, n));
+                expected++;
+            }
+        assertEquals(expected, ResonanceStore.pairCount(n));
+    }
+
+    @Test
+    void pairIndex_doesNotOverflowForLargestTriangle() {
+        int n = 65_536;
+        assertEquals(2_147_450_880, ResonanceStore.pairCount(n));
+        assertEquals(ResonanceStore.pairCount(n) - 1, ResonanceStore.pairIndex(n - 2, n - 1, n));
+        int pair = ResonanceStore.pairIndex(40_000, 50_000, n);
+        assertTrue(pair > 0);
+        assertEquals(40_000, ResonanceStore.rowOf(pair, n));
+    }
+
+    @Test
+    void pairCount_rejectsTriangleBeyondInt() {
+        assertThrows(ArithmeticException.class, () -> ResonanceStore.pairCount(65_537));
+        assertThrows(ArithmeticException.class, () -> ResonanceStore.pairIndex(65_535, 65_536, 65_537));
+    }
+}
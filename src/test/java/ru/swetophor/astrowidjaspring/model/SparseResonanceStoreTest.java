@@ -0,0 +1,51 @@
+package ru.swetophor.astrowidjaspring.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.config.Settings;
+import ru.swetophor.astrowidjaspring.model.chart.Chart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.swetophor.astrowidjaspring.model.MatrixFixture.*;
+
+class SparseResonanceStoreTest {
+
+    private final int edgeHarmonic = Settings.getEdgeHarmonic();
+
+    @AfterEach
+    void restoreSettings() {
+        Settings.setEdgeHarmonic(edgeHarmonic);
+    }
+
+    @Test
+    void sparseStore_matchesObjects() {
+        assertStoreMatches(MatrixStorage.SPARSE);
+    }
+
+    @Test
+    void storedPairs_areExactlyPairsWithAspects() {
+        // при низкой крайней гармонике многие пары остаются без аспектов
+        Settings.setEdgeHarmonic(6);
+        Chart[] charts = charts();
+        AstroMatrix expected = reference(charts);
+        int n = expected.getAllAstras().size();
+        List<Integer> withAspects = new ArrayList<>();
+        for (int i = 0; i < n - 1; i++)
+            for (int j = i + 1; j < n; j++)
+                if (!expected.getResonanceFor(i, j).getAspects().isEmpty())
+                    withAspects.add(ResonanceStore.pairIndex(i, j, n));
+        assertTrue(withAspects.size() < ResonanceStore.pairCount(n), "в картах нет пустых пар");
+
+        try (AstroMatrix matrix = new AstroMatrix(MatrixStorage.SPARSE, MatrixBuild.SEQUENTIAL, charts)) {
+            ResonanceStore store = matrix.getStore();
+            assertTrue(store instanceof SparseResonanceStore);
+            List<Integer> stored = new ArrayList<>();
+            for (int p = store.nextStored(0); p != -1; p = store.nextStored(p + 1))
+                stored.add(p);
+            assertEquals(withAspects, stored);
+        }
+    }
+}
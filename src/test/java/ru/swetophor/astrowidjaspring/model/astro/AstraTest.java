@@ -0,0 +1,60 @@
+package ru.swetophor.astrowidjaspring.model.astro;
+
+import org.junit.jupiter.api.Test;
+import ru.swetophor.astrowidjaspring.exception.FileFormatException;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AstraTest {
+
+    @Test
+    void readFromString_readsWholeCoordinatesAsDoublesWould() {
+        Random random = new Random(18);
+        for (int i = 0; i < 10_000; i++) {
+            double[] numbers = switch (random.nextInt(4)) {
+                case 0 -> new double[]{random.nextInt(360)};
+                case 1 -> new double[]{random.nextInt(360), random.nextInt(60)};
+                case 2 -> new double[]{random.nextInt(360), random.nextInt(60), random.nextInt(60)};
+                default -> new double[]{1 + random.nextInt(12), random.nextInt(30), random.nextInt(60), random.nextInt(60)};
+            };
+            StringBuilder line = new StringBuilder("Астра");
+            Double[] coordinate = new Double[numbers.length];
+            for (int k = 0; k < numbers.length; k++) {
+                line.append(' ').append((int) numbers[k]);
+                coordinate[k] = numbers[k];
+            }
+            Astra read = Astra.readFromString(line.toString());
+            assertEquals("Астра", read.getName());
+            assertEquals(Astra.fromData("Астра", coordinate).getZodiacPosition(), read.getZodiacPosition(), 0.0);
+        }
+    }
+
+    @Test
+    void readFromString_readsSecondPreciseCoordinateToTheSecond() {
+        assertEquals(123 * 3600 + 45 * 60 + 6, Astra.readFromString("Солнце 123 45 6").getArcSeconds());
+        assertEquals((4 * 30 + 12) * 3600 + 30 * 60 + 15, Astra.readFromString("Луна 5 12 30 15").getArcSeconds());
+    }
+
+    @Test
+    void readFromString_fallsBackToFractionsAndLongNumbers() {
+        assertEquals(12 * 3600 + 30 * 60, Astra.readFromString("Марс 12.5").getArcSeconds());
+        assertEquals(12 * 3600 + 30 * 60 + 30, Astra.readFromString("Марс 12 30.5").getArcSeconds());
+        // десять цифр parseWhole не читает, число разбирается как дробное
+        assertEquals(123 * 3600, Astra.readFromString("Марс 0000000123").getArcSeconds());
+        assertEquals(10 * 3600, Astra.readFromString("Марс +10").getArcSeconds());
+        assertThrows(FileFormatException.class, () -> Astra.readFromString("Марс десять"));
+        assertThrows(FileFormatException.class, () -> Astra.readFromString("Марс 10 -"));
+    }
+
+    @Test
+    void getArcSeconds_roundsToNearestSecondAndWrapsCircle() {
+        assertEquals(0, new Astra("А", 0).getArcSeconds());
+        assertEquals(180 * 3600, new Astra("А", 180).getArcSeconds());
+        assertEquals(1, new Astra("А", 0, 0, 0.5).getArcSeconds());
+        assertEquals(359 * 3600 + 59 * 60 + 59, new Astra("А", 359, 59, 59.4).getArcSeconds());
+        assertEquals(0, new Astra("А", 359, 59, 59.6).getArcSeconds());
+        assertEquals(359 * 3600, new Astra("А", -1).getArcSeconds());
+    }
+}
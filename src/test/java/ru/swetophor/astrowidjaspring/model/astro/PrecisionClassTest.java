@@ -0,0 +1,28 @@
+package ru.swetophor.astrowidjaspring.model.astro;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecisionClassTest {
+
+    @Test
+    void ofDepth_startsEachClassAtItsMinDepth() {
+        for (PrecisionClass precision : PrecisionClass.values()) {
+            assertEquals(precision, PrecisionClass.ofDepth(precision.getMinDepth()));
+            if (precision.ordinal() > 0)
+                assertEquals(PrecisionClass.values()[precision.ordinal() - 1],
+                        PrecisionClass.ofDepth(precision.getMinDepth() - 1));
+        }
+        assertEquals(PrecisionClass.NONE, PrecisionClass.ofDepth(-1));
+        assertEquals(PrecisionClass.EXACT, PrecisionClass.ofDepth(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void depthOf_readsSaturatedDepthAsExactSentinel() {
+        assertEquals(Integer.MAX_VALUE, AspectList.depthOf(AspectList.encode(5, 2, 0.0, 12)));
+        assertEquals(Integer.MAX_VALUE, AspectList.depthOf(AspectList.encode(5, 2, AspectList.MAX_DEPTH)));
+        assertEquals(AspectList.MAX_DEPTH - 1, AspectList.depthOf(AspectList.encode(5, 2, AspectList.MAX_DEPTH - 1)));
+        assertEquals(4, AspectList.depthOf(AspectList.encode(5, 2, 2.5, 12)));
+    }
+}
@@ -3,7 +3,11 @@ package ru.swetophor.astrowidjaspring.utils;
 import org.junit.jupiter.api.Test;
 import ru.swetophor.astrowidjaspring.model.astro.ZodiacPoint;
 
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static ru.swetophor.astrowidjaspring.utils.CelestialMechanics.CIRCLE_SECONDS;
+import static ru.swetophor.astrowidjaspring.utils.CelestialMechanics.HALF_CIRCLE_SECONDS;
 import static ru.swetophor.astrowidjaspring.utils.CelestialMechanics.getArc;
 import static ru.swetophor.astrowidjaspring.utils.CelestialMechanics.getVectorArc;
 
@@ -53,4 +57,41 @@ class CelestialMechanicsArcTest {
         assertEquals(220, CelestialMechanics.calculateAvg(ZERO_SCORPII, ZERO_VIRGINIS, ZERO_AQUARII));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void arcBetween_inArcSeconds() {
+        assertEquals(0, CelestialMechanics.arcBetween(0, 0));
+        assertEquals(HALF_CIRCLE_SECONDS, CelestialMechanics.arcBetween(0, HALF_CIRCLE_SECONDS));
+        assertEquals(HALF_CIRCLE_SECONDS, CelestialMechanics.arcBetween(HALF_CIRCLE_SECONDS + 10, 10));
+        // через 0° Овна: 359°59'59" и 0°0'1"
+        assertEquals(2, CelestialMechanics.arcBetween(CIRCLE_SECONDS - 1, 1));
+        assertEquals(HALF_CIRCLE_SECONDS - 1, CelestialMechanics.arcBetween(CIRCLE_SECONDS - 1, HALF_CIRCLE_SECONDS));
+    }
+
+    @Test
+    void arcInHarmonic_inArcSeconds() {
+        assertEquals(0, CelestialMechanics.arcInHarmonic(0, 7));
+        assertEquals(HALF_CIRCLE_SECONDS, CelestialMechanics.arcInHarmonic(HALF_CIRCLE_SECONDS, 1));
+        assertEquals(HALF_CIRCLE_SECONDS, CelestialMechanics.arcInHarmonic(HALF_CIRCLE_SECONDS, 3));
+        assertEquals(0, CelestialMechanics.arcInHarmonic(HALF_CIRCLE_SECONDS, 2));
+        // трин в 3-й гармонике обходит Круг ровно и становится соединением
+        assertEquals(0, CelestialMechanics.arcInHarmonic(120 * 3600, 3));
+        assertEquals(3, CelestialMechanics.arcInHarmonic(120 * 3600 + 1, 3));
+        assertEquals(3, CelestialMechanics.arcInHarmonic(120 * 3600 - 1, 3));
+        // произведение больше int: 180° в 100000-й гармонике
+        assertEquals(0, CelestialMechanics.arcInHarmonic(HALF_CIRCLE_SECONDS, 100_000));
+    }
+
+    @Test
+    void arcsInArcSeconds_matchDoubleArcsOfSecondPreciseCoordinates() {
+        Random random = new Random(18);
+        for (int i = 0; i < 100_000; i++) {
+            int a = random.nextInt(CIRCLE_SECONDS), b = random.nextInt(CIRCLE_SECONDS);
+            int harmonic = 1 + random.nextInt(300);
+            int arc = CelestialMechanics.arcBetween(a, b);
+            assertEquals(CelestialMechanics.arcBetween(a / 3600.0, b / 3600.0), arc / 3600.0, 1e-9);
+            assertEquals(CelestialMechanics.arcInHarmonic(arc / 3600.0, harmonic),
+                    CelestialMechanics.arcInHarmonic(arc, harmonic) / 3600.0, 1e-7);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.swetophor.astrowidjaspring.utils;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.*;
+import static ru.swetophor.astrowidjaspring.utils.CelestialMechanics.CIRCLE;
+import static ru.swetophor.astrowidjaspring.utils.CelestialMechanics.HALF_CIRCLE;
+
+/**
+ * Векторное ядро {@link HarmonicArcs}. Лежит в отдельном каталоге исходников
+ * {@code src/vector/java} и собирается только со свойством Gradle {@code vectorKernel};
+ * загружается, только если модуль {@code jdk.incubator.vector} доступен.
+ * <p>
+ * Остаток от деления на Круг берётся как {@code x - 360·trunc(x / 360)} с поправкой
+ * на одну ошибку округления частного. Для неотрицательных {@code x} меньше
+ * {@code 2^53} точная разность представима, так что результат побитово
+ * совпадает с {@code x % 360}, а с ним и с {@link CelestialMechanics#normalizeArc(double)}.
+ * Каждый метод обрабатывает целые векторы и возвращает, сколько элементов
+ * сделано; хвост досчитывает вызывающий.
+ */
+final class VectorHarmonicArcs implements ArcKernel {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    /**
+     * Целые той же ширины в полосах, что и {@link #DOUBLES}, для чтения номеров гармоник.
+     */
+    private static final VectorSpecies<Integer> INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+    VectorHarmonicArcs() {
+    }
+
+    @Override
+    public int lanes() {
+        return DOUBLES.length();
+    }
+
+    @Override
+    public int inHarmonics(double arc, int[] harmonics, int from, int to, double[] out) {
+        int bound = DOUBLES.loopBound(to - from);
+        for (int k = 0; k < bound; k += DOUBLES.length()) {
+            DoubleVector h = (DoubleVector) IntVector.fromArray(INTS, harmonics, from + k)
+                    .convertShape(I2D, DOUBLES, 0);
+            normalize(h.mul(arc)).intoArray(out, k);
+        }
+        return bound;
+    }
+
+    @Override
+    public int forHarmonic(double[] arcs, int count, int harmonic, double[] out) {
+        int bound = DOUBLES.loopBound(count);
+        for (int k = 0; k < bound; k += DOUBLES.length())
+            normalize(DoubleVector.fromArray(DOUBLES, arcs, k).mul(harmonic)).intoArray(out, k);
+        return bound;
+    }
+
+    /**
+     * @param x неотрицательные дуги.
+     * @return расстояния между концами дуг, от 0° до 180°.
+     */
+    private static DoubleVector normalize(DoubleVector x) {
+        DoubleVector turns = (DoubleVector) x.div(CIRCLE)
+                .convert(D2L, 0)
+                .convert(L2D, 0);
+        DoubleVector r = x.sub(turns.mul(CIRCLE));
+        r = r.add(CIRCLE, r.compare(LT, 0.0));
+        r = r.sub(CIRCLE, r.compare(GE, CIRCLE));
+        VectorMask<Double> far = r.compare(GT, HALF_CIRCLE);
+        return r.blend(r.neg().add(CIRCLE), far);
+    }
+}
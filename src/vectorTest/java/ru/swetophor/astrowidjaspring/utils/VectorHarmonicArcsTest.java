@@ -0,0 +1,97 @@
+package ru.swetophor.astrowidjaspring.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сверяет векторное ядро с обычным циклом. Лежит в {@code src/vectorTest/java}
+ * и выполняется только при сборке со свойством {@code -PvectorKernel}.
+ */
+class VectorHarmonicArcsTest {
+
+    private final VectorHarmonicArcs kernel = new VectorHarmonicArcs();
+
+    /**
+     * Длины отрезков: пустой, короче вектора, кратные ширине вектора и с хвостом.
+     */
+    private int[] lengths() {
+        int lanes = kernel.lanes();
+        return new int[]{0, 1, lanes - 1, lanes, lanes + 1, 3 * lanes, 3 * lanes + lanes / 2 + 1, 97};
+    }
+
+    private static double randomArc(Random random) {
+        return switch (random.nextInt(8)) {
+            case 0 -> 0;
+            case 1 -> 180;
+            case 2 -> 360.0 * random.nextInt(13) / 12 / 2;
+            default -> random.nextDouble() * 180;
+        };
+    }
+
+    private static void assertSameArc(double expected, double actual, String message) {
+        assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual),
+                message + ": " + expected + " против " + actual);
+    }
+
+    @Test
+    void kernel_isLoadedWhenVectorsAreWide() {
+        assertEquals(kernel.lanes() > 1, HarmonicArcs.isVectorized());
+    }
+
+    @Test
+    void inHarmonics_matchesScalarArcs() {
+        Random random = new Random(16);
+        for (int length : lengths())
+            for (int i = 0; i < 500; i++) {
+                double arc = randomArc(random);
+                int from = random.nextInt(4);
+                int[] harmonics = new int[from + length];
+                for (int k = 0; k < harmonics.length; k++)
+                    harmonics[k] = 1 + random.nextInt(random.nextBoolean() ? 108 : 100_000);
+                double[] vector = new double[length], whole = new double[length];
+
+                int done = kernel.inHarmonics(arc, harmonics, from, from + length, vector);
+                assertEquals(0, done % kernel.lanes());
+                assertTrue(done <= length && length - done < kernel.lanes(), "обработано " + done + " из " + length);
+                for (int k = 0; k < done; k++)
+                    assertSameArc(CelestialMechanics.arcInHarmonic(arc, harmonics[from + k]), vector[k],
+                            "дуга %s в гармонике %d".formatted(arc, harmonics[from + k]));
+
+                HarmonicArcs.inHarmonics(arc, harmonics, from, from + length, whole);
+                for (int k = 0; k < length; k++)
+                    assertSameArc(CelestialMechanics.arcInHarmonic(arc, harmonics[from + k]), whole[k],
+                            "дуга %s в гармонике %d".formatted(arc, harmonics[from + k]));
+            }
+    }
+
+    @Test
+    void forHarmonic_matchesScalarArcs() {
+        Random random = new Random(17);
+        for (int length : lengths())
+            for (int i = 0; i < 500; i++) {
+                int harmonic = 1 + random.nextInt(random.nextBoolean() ? 108 : 100_000);
+                double[] arcs = new double[length + random.nextInt(3)];
+                for (int k = 0; k < arcs.length; k++)
+                    arcs[k] = randomArc(random);
+                double[] vector = new double[arcs.length], whole = arcs.clone();
+
+                int done = kernel.forHarmonic(arcs, length, harmonic, vector);
+                assertEquals(0, done % kernel.lanes());
+                assertTrue(done <= length && length - done < kernel.lanes(), "обработано " + done + " из " + length);
+                for (int k = 0; k < done; k++)
+                    assertSameArc(CelestialMechanics.arcInHarmonic(arcs[k], harmonic), vector[k],
+                            "дуга %s в гармонике %d".formatted(arcs[k], harmonic));
+
+                // на месте: результат пишется поверх самих дуг
+                HarmonicArcs.forHarmonic(whole, length, harmonic, whole);
+                for (int k = 0; k < length; k++)
+                    assertSameArc(CelestialMechanics.arcInHarmonic(arcs[k], harmonic), whole[k],
+                            "дуга %s в гармонике %d".formatted(arcs[k], harmonic));
+                for (int k = length; k < arcs.length; k++)
+                    assertSameArc(arcs[k], whole[k], "дуга за пределом отрезка");
+            }
+    }
+}